@@ -0,0 +1,39 @@
+package chessEngine.bench;
+
+import chessEngine.ai.*;
+import chessEngine.gameState.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+
+    @Param({"opening", "middlegame", "endgame"})
+    public String position;
+
+    private BitBoard board;
+
+    private final Evaluator pieceSquare = new PieceSquareEvaluator();
+    private final Evaluator material = new MaterialEvaluator();
+
+    @Setup
+    public void setup(){
+        board = Positions.bitBoard(position);
+    }
+
+    @Benchmark
+    public int pieceSquareEvaluator(){
+        return pieceSquare.evaluate(board);
+    }
+
+    @Benchmark
+    public int materialEvaluator(){
+        return material.evaluate(board);
+    }
+}
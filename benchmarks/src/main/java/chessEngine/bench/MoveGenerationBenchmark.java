@@ -0,0 +1,73 @@
+package chessEngine.bench;
+
+import chessEngine.gameState.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenerationBenchmark {
+
+    @Param({"opening", "middlegame", "endgame"})
+    public String position;
+
+    private ChessBoard chessBoard;
+    private ChessMove chessMove;
+
+    private BitBoard bitBoard;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private int moveCount;
+
+    @Setup
+    public void setup(){
+        chessBoard = Positions.chessBoard(position);
+        chessMove = chessBoard.getValidMoves()[0];
+        bitBoard = Positions.bitBoard(position);
+        moveCount = MoveGenerator.generate(bitBoard, moves, 0);
+    }
+
+    @Benchmark
+    public ChessMove[] chessBoardGetValidMoves(){
+        return chessBoard.getValidMoves();
+    }
+
+    @Benchmark
+    public ChessBoard chessBoardApplyMove(){
+        return chessBoard.applyMove(chessMove);
+    }
+
+    @Benchmark
+    public boolean chessBoardIsInCheck(){
+        return chessBoard.isInCheck(chessBoard.isWhiteTurn);
+    }
+
+    @Benchmark
+    public int bitBoardGenerate(){
+        return MoveGenerator.generate(bitBoard, moves, 0);
+    }
+
+    // Every legal move made and unmade once; returns the key so the work cannot be eliminated
+    @Benchmark
+    public long bitBoardMakeUnmake(){
+
+        long keys = 0;
+
+        for(int i = 0; i < moveCount; i++){
+            bitBoard.makeMove(moves[i]);
+            keys ^= bitBoard.key;
+            bitBoard.unmakeMove();
+        }
+
+        return keys;
+    }
+
+    @Benchmark
+    public boolean bitBoardIsInCheck(){
+        return bitBoard.isInCheck();
+    }
+}
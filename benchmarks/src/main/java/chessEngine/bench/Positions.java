@@ -0,0 +1,30 @@
+package chessEngine.bench;
+
+import chessEngine.gameState.*;
+
+// Fixed benchmark corpus, so numbers from different runs and commits are comparable
+public final class Positions {
+
+    public static final String OPENING = "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4";
+    public static final String MIDDLEGAME = "r2q1rk1/pp2bppp/2n1pn2/3p4/2PP4/1PN1PN2/P3BPPP/R2Q1RK1 w - - 1 11";
+    public static final String ENDGAME = "8/5pk1/6p1/3R4/5P2/6P1/r4K2/8 w - - 0 45";
+
+    private Positions(){}
+
+    public static String fen(String name){
+        switch(name){
+            case "opening": return OPENING;
+            case "middlegame": return MIDDLEGAME;
+            case "endgame": return ENDGAME;
+            default: throw new IllegalArgumentException("Unknown position: " + name);
+        }
+    }
+
+    public static BitBoard bitBoard(String name){
+        return BitBoard.fromFen(fen(name));
+    }
+
+    public static ChessBoard chessBoard(String name){
+        return bitBoard(name).toChessBoard();
+    }
+}
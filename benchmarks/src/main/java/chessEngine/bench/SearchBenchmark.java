@@ -0,0 +1,42 @@
+package chessEngine.bench;
+
+import chessEngine.ai.*;
+import chessEngine.gameState.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// A fixed-depth search from an empty hash table, so every invocation does the same work
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"opening", "middlegame", "endgame"})
+    public String position;
+
+    @Param({"5"})
+    public int depth;
+
+    private ChessBoard board;
+    private AdvancedAI ai;
+
+    @Setup
+    public void setup(){
+        board = Positions.chessBoard(position);
+        ai = new AdvancedAI(depth);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable(){
+        ai.getTranspositionTable().clear();
+    }
+
+    @Benchmark
+    public ChessMove getAIMove(){
+        return ai.getAIMove(board);
+    }
+}
@@ -1,134 +1,350 @@
 package chessEngine.ai;
 
+import chessEngine.book.*;
 import chessEngine.gameState.*;
+import chessEngine.tablebase.*;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 import java.util.Random;
 
 public class AdvancedAI implements ChessAI {
 
+    public static final int MATE_SCORE = 30000;
+    public static final int INFINITE = 32000;
+    public static final int MAX_PLY = 128;
+
+    // Scores beyond this are mates; they are stored in the table relative to the node, not the root
+    static final int MATE_BOUND = MATE_SCORE - MAX_PLY;
+
     public int depth = 3;
 
-    private int analysedPositions;
-    private int skippedPositions;
+    private final TranspositionTable table;
+    private final Evaluator evaluator;
+
+    // Thread 0 runs on the caller's thread, the others are helpers started for each search
+    private SearchThread[] threads;
+
+    private SearchLimits limits;
+    private volatile long startTime;
+    volatile boolean stopped;
+
+    // Set from other threads: stop() ends the search, ponderHit() turns a ponder search into a timed one
+    private volatile boolean stopRequested;
+    private volatile boolean pondering;
+
+    private SearchListener listener;
+
+    private OpeningBook book;
+    private final Random bookRandom = new Random();
+
+    volatile Tablebases tablebases;
+
+    private SearchParams params = new SearchParams();
+
+    // Result of the search, taken from whichever thread completed the deepest iteration
+    private int[] principalVariation = new int[0];
+    private int lastScore;
+    private int completedDepth;
 
     public AdvancedAI(int depth){
+        this(depth, 16);
+    }
+
+    public AdvancedAI(int depth, int hashSizeMb){
+        this(depth, hashSizeMb, new PieceSquareEvaluator());
+    }
+
+    public AdvancedAI(int depth, int hashSizeMb, Evaluator evaluator){
         this.depth = depth;
+        this.table = new TranspositionTable(hashSizeMb);
+        this.evaluator = evaluator;
+        setThreads(1);
+    }
+
+    // Number of threads searching each move, all sharing the transposition table (Lazy SMP)
+    public void setThreads(int count){
+
+        threads = new SearchThread[Math.max(1, count)];
+
+        for(int i = 0; i < threads.length; i++){
+            threads[i] = new SearchThread(this, i, table, evaluator);
+        }
+    }
+
+    public int getThreads(){
+        return threads.length;
+    }
+
+    // Receives iteration reports and progress from the main search thread; null for none
+    public void setListener(SearchListener listener){
+        this.listener = listener;
+    }
+
+    // Positions found in the book are answered from it without searching; null for none
+    public void setBook(OpeningBook book){
+        this.book = book;
+    }
+
+    public OpeningBook getBook(){
+        return book;
+    }
+
+    // Selective search settings; each search works on a copy taken when it starts
+    public void setParams(SearchParams params){
+        this.params = params;
+    }
+
+    public SearchParams getParams(){
+        return params;
+    }
+
+    // Positions in the tables are played perfectly at the root and scored exactly inside the tree; null for none
+    public void setTablebases(Tablebases tablebases){
+        this.tablebases = tablebases;
+    }
+
+    public Tablebases getTablebases(){
+        return tablebases;
+    }
+
+    public Evaluator getEvaluator(){
+        return evaluator;
+    }
+
+    public TranspositionTable getTranspositionTable(){
+        return table;
+    }
+
+    public ChessMove[] getPrincipalVariation(){
+
+        ChessMove[] pv = new ChessMove[principalVariation.length];
+
+        for(int i = 0; i < pv.length; i++){
+            pv[i] = new ChessMove(principalVariation[i]);
+        }
+
+        return pv;
+    }
+
+    // Score of the last search in centipawns from the side to move's point of view
+    public int getLastScore(){
+        return lastScore;
+    }
+
+    public int getCompletedDepth(){
+        return completedDepth;
+    }
+
+    // Nodes searched by each thread during the last search
+    public long[] getThreadNodes(){
+
+        long[] nodes = new long[threads.length];
+
+        for(int i = 0; i < threads.length; i++){
+            nodes[i] = threads[i].nodes;
+        }
+
+        return nodes;
+    }
+
+    public long getNodes(){
+
+        long total = 0;
+
+        for(SearchThread thread : threads){
+            total += thread.nodes;
+        }
+
+        return total;
     }
 
     @Override
     public ChessMove getAIMove(ChessBoard board) {
+        return getAIMove(board, SearchLimits.depth(depth));
+    }
 
-        analysedPositions = 0;
-        skippedPositions = 0;
+    @Override
+    public ChessMove getAIMove(ChessBoard board, SearchLimits limits) {
+        return getAIMove(board, limits, false);
+    }
 
-        ChessMove[] moveList = board.getValidMoves();
+    // Iterative deepening on every thread. The move returned is the best one from the deepest iteration
+    // any thread ran to completion, preferring the main thread on equal depth. A ponder search ignores
+    // the time limits until ponderHit(), and counts its time from there.
+    public ChessMove getAIMove(ChessBoard board, SearchLimits limits, boolean ponder) {
 
-        List<ChessMove> moves = new ArrayList<>(Arrays.asList(moveList));
+        this.limits = limits;
 
-        Random r = new Random();
+        stopped = false;
+        stopRequested = false;
+        pondering = ponder;
+        startTime = System.currentTimeMillis();
 
-        float finalAnalysis = -10000.0f;
-        ChessMove bestMove = null;
+        BitBoard root = board.toBitBoard();
 
-        System.out.print("Analysis: " + moveList.length + " moves: ");
+        if(book != null && !ponder){
 
-        while(moves.size() > 0){
+            int bookMove = book.pick(root, bookRandom);
 
-            ChessMove move = moves.remove(r.nextInt(moves.size()));
+            if(bookMove != Move.NONE){
 
-            ChessBoard potentialBoard = board.applyMove(move);
+                if(listener != null) listener.searchStarted();
 
-            float analysis = -deepAnalysis(potentialBoard, depth - 1);
+                principalVariation = new int[]{bookMove};
+                lastScore = 0;
+                completedDepth = 0;
 
-            if(analysis >= finalAnalysis){
-                finalAnalysis = analysis;
-                bestMove = move;
+                return new ChessMove(bookMove);
             }
-
-            System.out.printf(move.toString() + " -> %+.2f  ", analysis);
         }
 
-        System.out.println("\nBest move : " + (bestMove == null ? "None" : bestMove.toString()) + " -> " + finalAnalysis);
-        System.out.println(analysedPositions + " positions analyzed. " + skippedPositions + " skipped");
+        if(tablebases != null && Long.bitCount(root.occupied) <= tablebases.maxPieces()){
 
-        return bestMove;
-    }
+            int tablebaseMove = tablebases.bestMove(root);
+
+            if(tablebaseMove != Move.NONE){
 
-    private float deepAnalysis(ChessBoard board, int depth){
+                if(listener != null) listener.searchStarted();
 
-        float initialAnalysis = simpleAnalysis(board);
+                principalVariation = new int[]{tablebaseMove};
+                lastScore = tablebaseScore(tablebases.probeWdl(root), tablebases.probeDtm(root), 0);
+                completedDepth = 0;
 
-        if(depth == 0){
-            return initialAnalysis;
+                return new ChessMove(tablebaseMove);
+            }
         }
 
-        ChessMove[] moveList = board.getValidMoves();
+        table.newSearch();
+
+        SearchParams searchParams = params.copy();
 
-        float finalAnalysis = -20000.0f;
+        int maxDepth = limits.depth > 0 ? Math.min(limits.depth, MAX_PLY - 1) : MAX_PLY - 1;
+
+        for(SearchThread thread : threads){
+            thread.prepare(root, maxDepth, searchParams);
+        }
+
+        Thread[] helpers = new Thread[threads.length - 1];
+
+        for(int i = 0; i < helpers.length; i++){
+            helpers[i] = new Thread(threads[i + 1], "search-helper-" + (i + 1));
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
 
-        for(ChessMove move : moveList){
+        if(listener != null) listener.searchStarted();
 
-            ChessBoard potentialBoard = board.applyMove(move);
+        threads[0].run();
 
-            float simpleAnalysis = -simpleAnalysis(potentialBoard);
+        // The main thread is done, by limits or by reaching maxDepth; the helpers stop with it
+        stopped = true;
 
-            if(simpleAnalysis - simpleAnalysis > depth - this.depth - finalAnalysis + 1.5f){
-                skippedPositions ++;
-                continue;
+        for(Thread helper : helpers){
+            try{
+                helper.join();
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
             }
+        }
 
-            float analysis = -deepAnalysis(potentialBoard, depth - 1);
+        SearchThread best = threads[0];
 
-            if(analysis > finalAnalysis) finalAnalysis = analysis;
+        for(SearchThread thread : threads){
+            if(thread.completedDepth > best.completedDepth && thread.principalVariation.length > 0) best = thread;
         }
 
-        return finalAnalysis;
+        principalVariation = best.principalVariation;
+        lastScore = best.lastScore;
+        completedDepth = best.completedDepth;
+
+        return principalVariation.length == 0 ? null : new ChessMove(principalVariation[0]);
     }
 
-    private float simpleAnalysis(ChessBoard board){
+    // Mate scores from the distance to mate, like the ones the search finds itself
+    static int tablebaseScore(int wdl, int dtm, int ply){
+
+        if(wdl == Tablebases.DRAW) return 0;
+
+        int mate = MATE_SCORE - ply - dtm;
+
+        return wdl == Tablebases.WIN ? mate : -mate;
+    }
 
-        analysedPositions++;
+    public long getTablebaseHits(){
 
-        if(board.isCheckMate()){
-            return -10000.0f;
+        long total = 0;
+
+        for(SearchThread thread : threads){
+            total += thread.tablebaseHits;
         }
 
-        int deltaMaterial = 0;
+        return total;
+    }
 
-        for(int x = 0; x < 8; x++){
-            for(int y = 0; y < 8; y++){
-                if(board.boardState[x][y].isWhite == board.isWhiteTurn && !(board.boardState[x][y] == ChessPiece.wKing || board.boardState[x][y] == ChessPiece.bKing)){
-                    deltaMaterial += board.boardState[x][y].value;
-                }else{
-                    deltaMaterial -= board.boardState[x][y].value;
-                }
-            }
+    // Ends the running search as soon as possible; it still returns the best move found so far
+    public void stop(){
+        stopRequested = true;
+    }
+
+    // The predicted move was played: keep searching, but under the time limits from now on
+    public void ponderHit(){
+        startTime = System.currentTimeMillis();
+        pondering = false;
+    }
+
+    public long getAnalysedPositions(){
+
+        long total = 0;
+
+        for(SearchThread thread : threads){
+            total += thread.analysedPositions;
         }
 
-        float squareControlAdvantage = 0;
+        return total;
+    }
+
+    public long getBetaCutoffs(){
 
-        for(int x1 = 0; x1 < 8; x1++){
-            for(int y1 = 0; y1 < 8; y1++){
-                for(int x2 = 0; x2 < 8; x2++){
-                    for(int y2 = 0; y2 < 8; y2++){
+        long total = 0;
 
-                        ChessMove move = new ChessMove(x1, y1, x2, y2);
+        for(SearchThread thread : threads){
+            total += thread.betaCutoffs;
+        }
 
-                        if(board.isValidMove(move, false)){
-                            if(board.isWhiteTurn == board.boardState[x1][y1].isWhite) {
-                                squareControlAdvantage += 0.1f / (board.boardState[x1][y1].value * board.boardState[x1][y1].value);
-                            }else{
-                                squareControlAdvantage -= 0.1f / (board.boardState[x1][y1].value*board.boardState[x1][y1].value);
-                            }
-                        }
-                    }
-                }
-            }
+        return total;
+    }
+
+    // Move ordering statistics of the main thread
+    public MoveOrdering getMoveOrdering(){
+        return threads[0].ordering;
+    }
+
+    // Called by the main thread after each completed iteration; returns whether to start another one
+    boolean iterationCompleted(SearchThread main){
+
+        long elapsed = System.currentTimeMillis() - startTime;
+
+        if(listener != null){
+            listener.iterationCompleted(new SearchInfo(main.completedDepth, main.lastScore, getNodes(), elapsed, main.principalVariation, table.hashfull()));
         }
 
-        return deltaMaterial + squareControlAdvantage;
+        return pondering || limits.softTimeMs <= 0 || elapsed < limits.softTimeMs;
+    }
+
+    // Only ever stops after the first iteration, so there is always a move to return
+    void checkLimits(int completedDepth){
+
+        long elapsed = System.currentTimeMillis() - startTime;
+
+        if(listener != null) listener.searchProgress(getNodes(), elapsed);
+
+        if(completedDepth == 0) return;
+
+        if(stopRequested){
+            stopped = true;
+        }else if(limits.nodes > 0 && getNodes() >= limits.nodes){
+            stopped = true;
+        }else if(!pondering && limits.hardTimeMs > 0 && elapsed >= limits.hardTimeMs){
+            stopped = true;
+        }
     }
 }
@@ -5,4 +5,9 @@ import chessEngine.gameState.*;
 public interface ChessAI {
 
     ChessMove getAIMove(ChessBoard board);
+
+    // Engines without their own time management ignore the limits
+    default ChessMove getAIMove(ChessBoard board, SearchLimits limits){
+        return getAIMove(board);
+    }
 }
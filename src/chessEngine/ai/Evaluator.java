@@ -0,0 +1,9 @@
+package chessEngine.ai;
+
+import chessEngine.gameState.*;
+
+public interface Evaluator {
+
+    // Static score of the position in centipawns from the side to move's point of view
+    int evaluate(BitBoard board);
+}
@@ -0,0 +1,21 @@
+package chessEngine.ai;
+
+import chessEngine.gameState.*;
+
+// Counts material and nothing else; a baseline to measure the other evaluators against
+public class MaterialEvaluator implements Evaluator {
+
+    private static final int[] VALUES = {100, 320, 330, 500, 900};
+
+    @Override
+    public int evaluate(BitBoard board) {
+
+        int score = 0;
+
+        for(int type = BitBoard.PAWN; type < BitBoard.KING; type++){
+            score += VALUES[type] * (Long.bitCount(board.pieces(BitBoard.WHITE, type)) - Long.bitCount(board.pieces(BitBoard.BLACK, type)));
+        }
+
+        return board.sideToMove == BitBoard.WHITE ? score : -score;
+    }
+}
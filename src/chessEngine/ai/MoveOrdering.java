@@ -0,0 +1,92 @@
+package chessEngine.ai;
+
+import chessEngine.gameState.*;
+
+import java.util.Arrays;
+
+// Heuristic state shared by the move pickers of one search: killer moves, butterfly history and cutoff counters
+public class MoveOrdering {
+
+    private static final int HISTORY_MAX = 1 << 14;
+
+    private final int[][] killers = new int[AdvancedAI.MAX_PLY][2];
+    private final int[][][] history = new int[2][64][64];
+
+    private final long[] stageCutoffs = new long[MovePicker.STAGES];
+    private long cutoffs;
+    private long firstMoveCutoffs;
+
+    // Killers belong to the previous position; history carries over at half weight
+    public void newSearch(){
+
+        for(int[] slots : killers){
+            Arrays.fill(slots, Move.NONE);
+        }
+
+        for(int[][] color : history){
+            for(int[] from : color){
+                for(int to = 0; to < 64; to++){
+                    from[to] /= 2;
+                }
+            }
+        }
+
+        Arrays.fill(stageCutoffs, 0);
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+    }
+
+    public int killer(int ply, int slot){
+        return killers[ply][slot];
+    }
+
+    public int history(int color, int move){
+        return history[color][Move.from(move)][Move.to(move)];
+    }
+
+    public static boolean isQuiet(int move){
+        return !Move.isCapture(move) && !Move.isPromotion(move);
+    }
+
+    // Called when move caused a beta cutoff; quiets lists the quiet moves searched before it at this node
+    public void onCutoff(int color, int move, int ply, int depth, int stage, int moveNumber, int[] quiets, int quietCount){
+
+        cutoffs++;
+        stageCutoffs[stage]++;
+        if(moveNumber == 1) firstMoveCutoffs++;
+
+        if(!isQuiet(move)) return;
+
+        if(killers[ply][0] != move){
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+
+        int bonus = Math.min(depth * depth, 400);
+
+        updateHistory(color, move, bonus);
+
+        for(int i = 0; i < quietCount; i++){
+            if(quiets[i] != move) updateHistory(color, quiets[i], -bonus);
+        }
+    }
+
+    // Moves the entry towards +/-HISTORY_MAX, so frequent winners saturate instead of overflowing
+    private void updateHistory(int color, int move, int bonus){
+        int[] row = history[color][Move.from(move)];
+        int to = Move.to(move);
+        row[to] += bonus - row[to] * Math.abs(bonus) / HISTORY_MAX;
+    }
+
+    public long getCutoffs(){
+        return cutoffs;
+    }
+
+    public long getStageCutoffs(int stage){
+        return stageCutoffs[stage];
+    }
+
+    public double firstMoveCutoffRate(){
+        return cutoffs == 0 ? 0.0 : (double) firstMoveCutoffs / cutoffs;
+    }
+}
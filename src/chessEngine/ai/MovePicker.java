@@ -0,0 +1,184 @@
+package chessEngine.ai;
+
+import chessEngine.gameState.*;
+
+// Hands out the moves of one node in stages: hash move, captures by MVV-LVA, killers, then quiets by history.
+// Each stage is generated only when reached and picked by selection, so a cutoff leaves the rest unsorted.
+public class MovePicker {
+
+    public static final int HASH = 0;
+    public static final int GENERATE_CAPTURES = 1;
+    public static final int CAPTURES = 2;
+    public static final int KILLERS = 3;
+    public static final int GENERATE_QUIETS = 4;
+    public static final int QUIETS = 5;
+    public static final int DONE = 6;
+
+    public static final int STAGES = 7;
+
+    // Ordering values for victims and promotion pieces, indexed by piece type
+    private static final int[] ORDER_VALUE = {1, 3, 3, 5, 9, 0};
+
+    private final MoveOrdering ordering;
+
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final int[] scores = new int[MoveGenerator.MAX_MOVES];
+    private final int[] scratch = new int[MoveGenerator.MAX_MOVES];
+    private final int[] killers = new int[2];
+
+    private BitBoard board;
+    private int hashMove;
+    private int ply;
+
+    private int stage;
+    private int lastStage;
+    private int index;
+    private int count;
+    private int killerIndex;
+    private boolean capturesOnly;
+
+    public MovePicker(MoveOrdering ordering){
+        this.ordering = ordering;
+    }
+
+    public void init(BitBoard board, int hashMove, int ply){
+        this.board = board;
+        this.hashMove = hashMove;
+        this.ply = ply;
+        stage = HASH;
+        capturesOnly = false;
+        killers[0] = Move.NONE;
+        killers[1] = Move.NONE;
+    }
+
+    // Quiescence nodes: captures and promotions only, no hash move or killers
+    public void initCaptures(BitBoard board, int ply){
+        init(board, Move.NONE, ply);
+        stage = GENERATE_CAPTURES;
+        capturesOnly = true;
+    }
+
+    // Stage the last returned move came from
+    public int lastStage(){
+        return lastStage;
+    }
+
+    // Each stage falls through to the next once it has nothing left to return
+    @SuppressWarnings("fallthrough")
+    public int next(){
+
+        switch(stage){
+
+            case HASH:
+
+                stage = GENERATE_CAPTURES;
+
+                if(MoveGenerator.isLegal(board, hashMove, scratch)){
+                    lastStage = HASH;
+                    return hashMove;
+                }
+
+            case GENERATE_CAPTURES:
+
+                count = MoveGenerator.generate(board, moves, 0, MoveGenerator.CAPTURES);
+                index = 0;
+
+                for(int i = 0; i < count; i++){
+                    scores[i] = captureScore(moves[i]);
+                }
+
+                stage = CAPTURES;
+
+            case CAPTURES:
+
+                while(index < count){
+                    int move = pickBest();
+                    if(move == hashMove) continue;
+                    lastStage = CAPTURES;
+                    return move;
+                }
+
+                if(capturesOnly){
+                    stage = DONE;
+                    return Move.NONE;
+                }
+
+                killerIndex = 0;
+                stage = KILLERS;
+
+            case KILLERS:
+
+                while(killerIndex < 2){
+
+                    int killer = ordering.killer(ply, killerIndex);
+
+                    if(killer != hashMove && MoveOrdering.isQuiet(killer) && MoveGenerator.isLegal(board, killer, scratch)){
+                        killers[killerIndex++] = killer;
+                        lastStage = KILLERS;
+                        return killer;
+                    }
+
+                    killerIndex++;
+                }
+
+                stage = GENERATE_QUIETS;
+
+            case GENERATE_QUIETS:
+
+                count = MoveGenerator.generate(board, moves, 0, MoveGenerator.QUIETS);
+                index = 0;
+
+                for(int i = 0; i < count; i++){
+                    scores[i] = ordering.history(board.sideToMove, moves[i]);
+                }
+
+                stage = QUIETS;
+
+            case QUIETS:
+
+                while(index < count){
+                    int move = pickBest();
+                    if(move == hashMove || move == killers[0] || move == killers[1]) continue;
+                    lastStage = QUIETS;
+                    return move;
+                }
+
+                stage = DONE;
+
+            default:
+                return Move.NONE;
+        }
+    }
+
+    private int captureScore(int move){
+
+        int victim = Move.isEnPassant(move) ? BitBoard.PAWN : board.mailbox[Move.to(move)];
+        int victimValue = victim == BitBoard.EMPTY ? 0 : ORDER_VALUE[BitBoard.pieceType(victim)];
+        int promotionValue = Move.isPromotion(move) ? ORDER_VALUE[Move.promotion(move)] : 0;
+        int attacker = BitBoard.pieceType(board.mailbox[Move.from(move)]);
+
+        return (victimValue + promotionValue) * 16 - attacker;
+    }
+
+    // One selection-sort step: swap the best remaining move to the front of the unsorted part
+    private int pickBest(){
+
+        int best = index;
+
+        for(int i = index + 1; i < count; i++){
+            if(scores[i] > scores[best]) best = i;
+        }
+
+        int move = moves[best];
+        int score = scores[best];
+
+        moves[best] = moves[index];
+        scores[best] = scores[index];
+        moves[index] = move;
+        scores[index] = score;
+
+        index++;
+
+        return move;
+    }
+}
@@ -0,0 +1,90 @@
+package chessEngine.ai;
+
+import chessEngine.gameState.*;
+
+// Material and piece-square tables, both read from the sums the board keeps up to date during make/unmake,
+// blended between middlegame and endgame by the remaining material. Mobility is counted from attack
+// bitboards: squares a piece attacks that are neither its own side's nor covered by an enemy pawn.
+public class PieceSquareEvaluator implements Evaluator {
+
+    // Centipawns per safe square, indexed by piece type
+    private static final int[] MOBILITY_MG = {0, 4, 5, 2, 1, 0};
+    private static final int[] MOBILITY_EG = {0, 4, 5, 4, 2, 0};
+
+    private static final int BISHOP_PAIR = 30;
+
+    @Override
+    public int evaluate(BitBoard board) {
+
+        int mg = board.mgScore;
+        int eg = board.egScore;
+
+        long whitePawnAttacks = pawnAttacks(board.pieces(BitBoard.WHITE, BitBoard.PAWN), BitBoard.WHITE);
+        long blackPawnAttacks = pawnAttacks(board.pieces(BitBoard.BLACK, BitBoard.PAWN), BitBoard.BLACK);
+
+        int whiteMobility = mobility(board, BitBoard.WHITE, ~board.colors[BitBoard.WHITE] & ~blackPawnAttacks);
+        int blackMobility = mobility(board, BitBoard.BLACK, ~board.colors[BitBoard.BLACK] & ~whitePawnAttacks);
+
+        mg += (whiteMobility & 0xFFFF) - (blackMobility & 0xFFFF);
+        eg += (whiteMobility >>> 16) - (blackMobility >>> 16);
+
+        if(Long.bitCount(board.pieces(BitBoard.WHITE, BitBoard.BISHOP)) >= 2){
+            mg += BISHOP_PAIR;
+            eg += BISHOP_PAIR;
+        }
+
+        if(Long.bitCount(board.pieces(BitBoard.BLACK, BitBoard.BISHOP)) >= 2){
+            mg -= BISHOP_PAIR;
+            eg -= BISHOP_PAIR;
+        }
+
+        int phase = Math.min(board.phase, PieceSquareTables.MAX_PHASE);
+        int score = (mg * phase + eg * (PieceSquareTables.MAX_PHASE - phase)) / PieceSquareTables.MAX_PHASE;
+
+        return board.sideToMove == BitBoard.WHITE ? score : -score;
+    }
+
+    // Middlegame term in the low 16 bits, endgame term in the high 16; both are small and never negative
+    private static int mobility(BitBoard board, int color, long targets){
+
+        int mg = 0;
+        int eg = 0;
+
+        for(int type = BitBoard.KNIGHT; type <= BitBoard.QUEEN; type++){
+
+            long pieces = board.pieces(color, type);
+
+            while(pieces != 0){
+
+                int sq = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+
+                int count = Long.bitCount(attacks(type, sq, board.occupied) & targets);
+
+                mg += MOBILITY_MG[type] * count;
+                eg += MOBILITY_EG[type] * count;
+            }
+        }
+
+        return eg << 16 | mg;
+    }
+
+    private static long attacks(int type, int sq, long occupied){
+
+        switch(type){
+            case BitBoard.KNIGHT: return Attacks.KNIGHT[sq];
+            case BitBoard.BISHOP: return Attacks.bishop(sq, occupied);
+            case BitBoard.ROOK: return Attacks.rook(sq, occupied);
+            default: return Attacks.queen(sq, occupied);
+        }
+    }
+
+    private static long pawnAttacks(long pawns, int color){
+
+        if(color == BitBoard.WHITE){
+            return ((pawns << 7) & ~Attacks.FILE_H) | ((pawns << 9) & ~Attacks.FILE_A);
+        }
+
+        return ((pawns >>> 9) & ~Attacks.FILE_H) | ((pawns >>> 7) & ~Attacks.FILE_A);
+    }
+}
@@ -0,0 +1,58 @@
+package chessEngine.ai;
+
+import chessEngine.gameState.*;
+
+// Snapshot of a completed iteration, handed to the SearchListener
+public class SearchInfo {
+
+    public final int depth;
+    // Centipawns from the side to move's point of view; see isMate() and mateIn()
+    public final int score;
+    public final long nodes;
+    public final long timeMs;
+    public final int[] pv;
+    public final int hashfull;
+
+    public SearchInfo(int depth, int score, long nodes, long timeMs, int[] pv, int hashfull){
+        this.depth = depth;
+        this.score = score;
+        this.nodes = nodes;
+        this.timeMs = timeMs;
+        this.pv = pv;
+        this.hashfull = hashfull;
+    }
+
+    public boolean isMate(){
+        return Math.abs(score) >= AdvancedAI.MATE_BOUND;
+    }
+
+    // Moves (not plies) until mate, negative when the side to move is getting mated
+    public int mateIn(){
+        return score > 0 ? (AdvancedAI.MATE_SCORE - score + 1) / 2 : -(AdvancedAI.MATE_SCORE + score) / 2;
+    }
+
+    public long nodesPerSecond(){
+        return timeMs == 0 ? nodes * 1000 : nodes * 1000 / timeMs;
+    }
+
+    public String toString(){
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("depth ").append(depth).append(" score ");
+
+        if(isMate()){
+            sb.append("mate ").append(mateIn());
+        }else{
+            sb.append(String.format("%+.2f", score / 100.0f));
+        }
+
+        sb.append(" nodes ").append(nodes).append(" time ").append(timeMs).append("ms pv");
+
+        for(int move : pv){
+            sb.append(' ').append(Move.toString(move));
+        }
+
+        return sb.toString();
+    }
+}
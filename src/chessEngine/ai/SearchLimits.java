@@ -0,0 +1,56 @@
+package chessEngine.ai;
+
+public class SearchLimits {
+
+    // Zero means "no limit" for every field
+    public final int depth;
+    public final long softTimeMs;
+    public final long hardTimeMs;
+    public final long nodes;
+
+    public SearchLimits(int depth, long softTimeMs, long hardTimeMs, long nodes){
+        this.depth = depth;
+        this.softTimeMs = softTimeMs;
+        this.hardTimeMs = hardTimeMs;
+        this.nodes = nodes;
+    }
+
+    public static SearchLimits depth(int depth){
+        return new SearchLimits(depth, 0, 0, 0);
+    }
+
+    // No new iteration starts after softMs; the running one is abandoned at hardMs
+    public static SearchLimits time(long softMs, long hardMs){
+        return new SearchLimits(0, softMs, hardMs, 0);
+    }
+
+    // A fixed budget per move: an iteration that starts past half the budget rarely finishes in time
+    public static SearchLimits moveTime(long ms){
+        return new SearchLimits(0, ms / 2, ms, 0);
+    }
+
+    // Time management for a game clock: an even share of the remaining time plus most of the increment, but
+    // never more than a third of the clock on one move. movesToGo is 0 when the clock covers the whole game.
+    public static SearchLimits clock(long remainingMs, long incrementMs, int movesToGo){
+
+        long available = Math.max(1, remainingMs);
+        long budget = available / (movesToGo > 0 ? movesToGo + 1 : 30) + incrementMs * 3 / 4;
+
+        long hard = Math.max(1, Math.min(available / 3, budget * 3));
+        long soft = Math.max(1, Math.min(budget, hard));
+
+        return time(soft, hard);
+    }
+
+    public SearchLimits withDepth(int depth){
+        return new SearchLimits(depth, softTimeMs, hardTimeMs, nodes);
+    }
+
+    public SearchLimits withNodes(long nodes){
+        return new SearchLimits(depth, softTimeMs, hardTimeMs, nodes);
+    }
+
+    public String toString(){
+        return "depth " + depth + ", soft " + softTimeMs + "ms, hard " + hardTimeMs + "ms, nodes " + nodes;
+    }
+}
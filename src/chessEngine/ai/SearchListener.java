@@ -0,0 +1,15 @@
+package chessEngine.ai;
+
+// Receives progress reports from AdvancedAI. Every call comes from the main search thread, so
+// implementations should return quickly and do any rate limiting themselves.
+public interface SearchListener {
+
+    // Once per search, before the first iteration; from here on stop() and ponderHit() take effect
+    default void searchStarted(){}
+
+    // After every iteration the main thread completes
+    void iterationCompleted(SearchInfo info);
+
+    // About every thousand nodes of the main thread while searching
+    default void searchProgress(long nodes, long elapsedMs){}
+}
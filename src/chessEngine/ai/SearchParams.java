@@ -0,0 +1,85 @@
+package chessEngine.ai;
+
+// Switches and tuning values for the selective parts of the search. Depths are in plies, margins in
+// centipawns. Changes take effect at the next search.
+public class SearchParams {
+
+    // Null move: give the opponent a free move; if a reduced search still fails high the node is cut.
+    // Skipped without non-pawn material, where zugzwang makes passing look better than it is.
+    public boolean nullMove = true;
+    public int nullMoveMinDepth = 3;
+    public int nullMoveReduction = 3;
+    // Further reduction of one ply per this many plies of depth
+    public int nullMoveDepthDivisor = 4;
+
+    // Late move reductions: quiet moves late in the order are searched shallower, and again at full depth
+    // if they beat alpha. Reduction is base + ln(depth) * ln(move number) / divisor.
+    public boolean lateMoveReductions = true;
+    public int lateMoveMinDepth = 3;
+    public int lateMoveMinMoves = 3;
+    public double lateMoveBase = 0.75;
+    public double lateMoveDivisor = 2.25;
+
+    // Reverse futility: a static score this far above beta per ply of depth is trusted to hold
+    public boolean reverseFutility = true;
+    public int reverseFutilityMaxDepth = 6;
+    public int reverseFutilityMargin = 80;
+
+    // Futility: quiet moves are skipped when the static score plus this per ply of depth cannot reach alpha
+    public boolean futility = true;
+    public int futilityMaxDepth = 3;
+    public int futilityMargin = 120;
+
+    // Razoring: a static score this far below alpha per ply of depth drops straight into quiescence
+    public boolean razoring = true;
+    public int razoringMaxDepth = 3;
+    public int razoringMargin = 250;
+
+    // Plain alpha-beta with every selective technique switched off, for comparison
+    public static SearchParams fullWidth(){
+
+        SearchParams params = new SearchParams();
+
+        params.nullMove = false;
+        params.lateMoveReductions = false;
+        params.reverseFutility = false;
+        params.futility = false;
+        params.razoring = false;
+
+        return params;
+    }
+
+    public SearchParams copy(){
+
+        SearchParams copy = new SearchParams();
+
+        copy.nullMove = nullMove;
+        copy.nullMoveMinDepth = nullMoveMinDepth;
+        copy.nullMoveReduction = nullMoveReduction;
+        copy.nullMoveDepthDivisor = nullMoveDepthDivisor;
+        copy.lateMoveReductions = lateMoveReductions;
+        copy.lateMoveMinDepth = lateMoveMinDepth;
+        copy.lateMoveMinMoves = lateMoveMinMoves;
+        copy.lateMoveBase = lateMoveBase;
+        copy.lateMoveDivisor = lateMoveDivisor;
+        copy.reverseFutility = reverseFutility;
+        copy.reverseFutilityMaxDepth = reverseFutilityMaxDepth;
+        copy.reverseFutilityMargin = reverseFutilityMargin;
+        copy.futility = futility;
+        copy.futilityMaxDepth = futilityMaxDepth;
+        copy.futilityMargin = futilityMargin;
+        copy.razoring = razoring;
+        copy.razoringMaxDepth = razoringMaxDepth;
+        copy.razoringMargin = razoringMargin;
+
+        return copy;
+    }
+
+    public String toString(){
+        return "nullMove " + nullMove + " (depth " + nullMoveMinDepth + ", R " + nullMoveReduction + " + depth/" + nullMoveDepthDivisor + ")"
+                + ", lmr " + lateMoveReductions + " (depth " + lateMoveMinDepth + ", after " + lateMoveMinMoves + ", " + lateMoveBase + " + ln*ln/" + lateMoveDivisor + ")"
+                + ", reverseFutility " + reverseFutility + " (depth " + reverseFutilityMaxDepth + ", " + reverseFutilityMargin + ")"
+                + ", futility " + futility + " (depth " + futilityMaxDepth + ", " + futilityMargin + ")"
+                + ", razoring " + razoring + " (depth " + razoringMaxDepth + ", " + razoringMargin + ")";
+    }
+}
@@ -0,0 +1,446 @@
+package chessEngine.ai;
+
+import chessEngine.gameState.*;
+import chessEngine.tablebase.*;
+
+import java.util.Arrays;
+
+import static chessEngine.ai.AdvancedAI.*;
+
+// One worker of AdvancedAI's search. Each thread owns its board, move ordering and PV and shares only the
+// transposition table and the stop flag with the others, so helpers speed up the main thread purely
+// through the entries they leave in the table.
+class SearchThread implements Runnable {
+
+    // Quiescence gives up on captures this many plies past the horizon and trusts the static score
+    private static final int MAX_QUIESCENCE_DEPTH = 16;
+
+    // A capture that cannot lift the stand-pat score to within this much of alpha is not worth searching
+    private static final int DELTA_MARGIN = 200;
+
+    final int id;
+
+    private final AdvancedAI ai;
+    private final TranspositionTable table;
+    private final Evaluator evaluator;
+
+    private BitBoard board;
+    private int maxDepth;
+
+    private SearchParams params;
+    // Late move reduction by [depth][move number], from params
+    private final int[][] reductions = new int[64][64];
+
+    // Written only by this thread; others read them as estimates while it runs
+    long nodes;
+    long analysedPositions;
+    long betaCutoffs;
+    long tablebaseHits;
+
+    final MoveOrdering ordering = new MoveOrdering();
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY];
+    private final int[][] quietsSearched = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[] drawCheckMoves = new int[MoveGenerator.MAX_MOVES];
+    private final int[] exchangeGains = new int[StaticExchange.MAX_EXCHANGE];
+    // Piece squares for tablebase probes, one per piece a board can hold
+    private final int[] tablebaseSquares = new int[32];
+
+    // Triangular PV table: pvTable[ply] holds the best line found from that ply
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+
+    // Best line of the last completed iteration, searched first by the next one
+    int[] principalVariation = new int[0];
+    private final boolean[] followPv = new boolean[MAX_PLY];
+    // Whether the move into each ply was a null move; two in a row would prove nothing
+    private final boolean[] nullMovePlayed = new boolean[MAX_PLY];
+    int lastScore;
+    int completedDepth;
+
+    SearchThread(AdvancedAI ai, int id, TranspositionTable table, Evaluator evaluator){
+
+        this.ai = ai;
+        this.id = id;
+        this.table = table;
+        this.evaluator = evaluator;
+
+        for(int ply = 0; ply < MAX_PLY; ply++){
+            pickers[ply] = new MovePicker(ordering);
+        }
+    }
+
+    void prepare(BitBoard root, int maxDepth, SearchParams params){
+
+        this.board = new BitBoard(root);
+        this.maxDepth = maxDepth;
+        this.params = params;
+
+        for(int depth = 1; depth < 64; depth++){
+            for(int moves = 1; moves < 64; moves++){
+                reductions[depth][moves] = (int) (params.lateMoveBase + Math.log(depth) * Math.log(moves) / params.lateMoveDivisor);
+            }
+        }
+
+        nodes = 0;
+        analysedPositions = 0;
+        betaCutoffs = 0;
+        tablebaseHits = 0;
+
+        principalVariation = new int[0];
+        lastScore = 0;
+        completedDepth = 0;
+
+        ordering.newSearch();
+    }
+
+    // Iterative deepening. Odd-numbered helpers start one ply deeper than everyone else, so the threads
+    // spread over neighbouring depths instead of all racing through the same iteration.
+    @Override
+    public void run(){
+
+        int start = id == 0 ? 1 : 1 + (id & 1);
+
+        for(int iteration = start; iteration <= maxDepth; iteration++){
+
+            followPv[0] = true;
+            nullMovePlayed[0] = false;
+
+            int score = search(board, -INFINITE, INFINITE, iteration, 0);
+
+            if(ai.stopped) break;
+
+            lastScore = score;
+            completedDepth = iteration;
+            principalVariation = Arrays.copyOf(pvTable[0], pvLength[0]);
+
+            if(id == 0 && !ai.iterationCompleted(this)) break;
+
+            if(pvLength[0] == 0) break;
+            if(Math.abs(score) >= MATE_BOUND) break;
+        }
+    }
+
+    // Only the main thread watches the clock and node budget; helpers just follow the stop flag
+    private void checkLimits(){
+        if(id == 0) ai.checkLimits(completedDepth);
+    }
+
+    // Fail-soft alpha-beta with principal variation search: every move after the first is tried with a
+    // null window around alpha and only re-searched with the full window if it lands inside it
+    private int search(BitBoard board, int alpha, int beta, int depth, int ply){
+
+        if(ply > 0 && isDraw(board)){
+            pvLength[ply] = 0;
+            analysedPositions++;
+            return 0;
+        }
+
+        if(depth <= 0){
+            return quiesce(board, alpha, beta, ply, 0);
+        }
+
+        pvLength[ply] = 0;
+
+        if((++nodes & 1023) == 0) checkLimits();
+        if(ai.stopped) return 0;
+
+        boolean pvNode = beta - alpha > 1;
+
+        // Inside the tables the exact result is known, so the subtree is not searched at all. The tables ignore
+        // the fifty-move rule, so a win further away than the clock allows is still scored as a win.
+        Tablebases tablebases = ai.tablebases;
+
+        if(ply > 0 && tablebases != null && Long.bitCount(board.occupied) <= tablebases.maxPieces()){
+
+            int wdl = tablebases.probeWdl(board, tablebaseSquares);
+
+            if(wdl != Tablebases.UNKNOWN){
+                tablebaseHits++;
+                return tablebaseScore(wdl, tablebases.probeDtm(board, tablebaseSquares), ply);
+            }
+        }
+
+        long entry = table.probe(board.key);
+        int hashMove = Move.NONE;
+
+        if(entry != 0){
+
+            hashMove = TranspositionTable.move(entry);
+
+            if(ply > 0 && !pvNode && TranspositionTable.depth(entry) >= depth){
+
+                int score = scoreFromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+
+                if(bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)){
+                    return score;
+                }
+            }
+        }
+
+        if(ply >= MAX_PLY - 1){
+            return evaluate(board);
+        }
+
+        boolean inCheck = board.isInCheck();
+        int staticEval = inCheck ? -INFINITE : evaluator.evaluate(board);
+
+        // Pruning on the static score only where a bad guess cannot change the principal variation
+        if(ply > 0 && !pvNode && !inCheck){
+
+            if(params.reverseFutility && depth <= params.reverseFutilityMaxDepth && Math.abs(beta) < MATE_BOUND
+                    && staticEval - params.reverseFutilityMargin * depth >= beta){
+                return staticEval;
+            }
+
+            if(params.razoring && depth <= params.razoringMaxDepth && staticEval + params.razoringMargin * depth <= alpha){
+
+                int score = quiesce(board, alpha, alpha + 1, ply, 0);
+
+                if(score <= alpha) return score;
+            }
+
+            if(params.nullMove && depth >= params.nullMoveMinDepth && !nullMovePlayed[ply] && staticEval >= beta
+                    && board.hasNonPawnMaterial(board.sideToMove)){
+
+                int reduction = params.nullMoveReduction + depth / params.nullMoveDepthDivisor;
+
+                followPv[ply + 1] = false;
+                nullMovePlayed[ply + 1] = true;
+
+                board.makeNullMove();
+                int score = -search(board, -beta, -beta + 1, depth - 1 - reduction, ply + 1);
+                board.unmakeNullMove();
+
+                nullMovePlayed[ply + 1] = false;
+
+                if(ai.stopped) return 0;
+
+                // A mate found after passing is not a mate the opponent can be held to
+                if(score >= beta) return score >= MATE_BOUND ? beta : score;
+            }
+        }
+
+        boolean futile = params.futility && ply > 0 && !pvNode && !inCheck && depth <= params.futilityMaxDepth
+                && Math.abs(alpha) < MATE_BOUND && staticEval + params.futilityMargin * depth <= alpha;
+
+        // Try the previous iteration's PV move first while still on that line, otherwise the hash move
+        int firstMove = followPv[ply] && ply < principalVariation.length ? principalVariation[ply] : hashMove;
+
+        MovePicker picker = pickers[ply];
+        picker.init(board, firstMove, ply);
+
+        int[] quiets = quietsSearched[ply];
+        int quietCount = 0;
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITE;
+        int bestMove = Move.NONE;
+        int legalMoves = 0;
+        int movesSearched = 0;
+        int move;
+
+        while((move = picker.next()) != Move.NONE){
+
+            legalMoves++;
+
+            boolean quiet = MoveOrdering.isQuiet(move);
+            boolean killer = picker.lastStage() == MovePicker.KILLERS;
+
+            followPv[ply + 1] = followPv[ply] && ply < principalVariation.length && move == principalVariation[ply];
+
+            board.makeMove(move);
+
+            boolean givesCheck = board.isInCheck();
+
+            if(futile && quiet && movesSearched > 0 && !givesCheck){
+                board.unmakeMove();
+                continue;
+            }
+
+            int i = movesSearched++;
+            int score;
+
+            if(i == 0){
+                score = -search(board, -beta, -alpha, depth - 1, ply + 1);
+            }else{
+
+                int reduction = 0;
+
+                if(params.lateMoveReductions && quiet && !killer && !inCheck && !givesCheck
+                        && depth >= params.lateMoveMinDepth && i >= params.lateMoveMinMoves){
+
+                    reduction = reductions[Math.min(depth, 63)][Math.min(i, 63)];
+
+                    if(pvNode) reduction--;
+
+                    reduction = Math.max(0, Math.min(reduction, depth - 2));
+                }
+
+                score = -search(board, -alpha - 1, -alpha, depth - 1 - reduction, ply + 1);
+
+                if(reduction > 0 && score > alpha){
+                    score = -search(board, -alpha - 1, -alpha, depth - 1, ply + 1);
+                }
+
+                if(score > alpha && score < beta){
+                    score = -search(board, -beta, -alpha, depth - 1, ply + 1);
+                }
+            }
+
+            board.unmakeMove();
+
+            if(ai.stopped) return 0;
+
+            if(score > bestScore){
+
+                bestScore = score;
+                bestMove = move;
+
+                if(score > alpha){
+
+                    alpha = score;
+
+                    pvTable[ply][0] = move;
+                    System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+                    pvLength[ply] = pvLength[ply + 1] + 1;
+
+                    if(alpha >= beta){
+                        betaCutoffs++;
+                        ordering.onCutoff(board.sideToMove, move, ply, depth, picker.lastStage(), movesSearched, quiets, quietCount);
+                        break;
+                    }
+                }
+            }
+
+            if(quiet) quiets[quietCount++] = move;
+        }
+
+        if(legalMoves == 0){
+            analysedPositions++;
+            return inCheck ? -MATE_SCORE + ply : 0;
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(board.key, bestMove, scoreToTable(bestScore, ply), depth, bound);
+
+        return bestScore;
+    }
+
+    // Resolves captures past the horizon so the static score is never taken in the middle of an exchange.
+    // The side to move may stand pat on the static score, and losing or hopeless captures are skipped.
+    // In check every evasion is searched, since standing pat there could hide a mate.
+    private int quiesce(BitBoard board, int alpha, int beta, int ply, int qDepth){
+
+        pvLength[ply] = 0;
+
+        if((++nodes & 1023) == 0) checkLimits();
+        if(ai.stopped) return 0;
+
+        if(ply >= MAX_PLY - 1 || qDepth >= MAX_QUIESCENCE_DEPTH){
+            return evaluate(board);
+        }
+
+        // Neither side can mate with what is left, whatever is captured next
+        if(board.isInsufficientMaterial()){
+            analysedPositions++;
+            return 0;
+        }
+
+        boolean inCheck = board.isInCheck();
+
+        int standPat = -INFINITE;
+        int bestScore = -INFINITE;
+
+        MovePicker picker = pickers[ply];
+
+        if(inCheck){
+            picker.init(board, Move.NONE, ply);
+        }else{
+
+            standPat = evaluate(board);
+
+            if(standPat >= beta) return standPat;
+            if(standPat > alpha) alpha = standPat;
+
+            bestScore = standPat;
+            picker.initCaptures(board, ply);
+        }
+
+        int movesSearched = 0;
+        int move;
+
+        while((move = picker.next()) != Move.NONE){
+
+            movesSearched++;
+
+            if(!inCheck){
+
+                if(!Move.isPromotion(move) && standPat + captureValue(board, move) + DELTA_MARGIN <= alpha) continue;
+                if(StaticExchange.evaluate(board, move, exchangeGains) < 0) continue;
+            }
+
+            board.makeMove(move);
+            int score = -quiesce(board, -beta, -alpha, ply + 1, qDepth + 1);
+            board.unmakeMove();
+
+            if(ai.stopped) return 0;
+
+            if(score > bestScore){
+
+                bestScore = score;
+
+                if(score > alpha){
+
+                    alpha = score;
+
+                    if(alpha >= beta){
+                        betaCutoffs++;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if(inCheck && movesSearched == 0){
+            analysedPositions++;
+            return -MATE_SCORE + ply;
+        }
+
+        return bestScore;
+    }
+
+    // Repetitions, the fifty-move rule and positions neither side can win; each is a cutoff at any depth.
+    // Repetition only looks back to the last capture or pawn move, so it costs a few comparisons at most.
+    private boolean isDraw(BitBoard board){
+
+        if(board.isInsufficientMaterial() || board.isRepetition()) return true;
+
+        // Mate on the move that completes the fifty moves still stands
+        return board.halfmoveClock >= 100 && (!board.isInCheck() || MoveGenerator.generate(board, drawCheckMoves, 0) > 0);
+    }
+
+    private static int captureValue(BitBoard board, int move){
+
+        if(Move.isEnPassant(move)) return StaticExchange.VALUES[BitBoard.PAWN];
+
+        int victim = board.mailbox[Move.to(move)];
+
+        return victim == BitBoard.EMPTY ? 0 : StaticExchange.VALUES[BitBoard.pieceType(victim)];
+    }
+
+    private static int scoreToTable(int score, int ply){
+        return score >= MATE_BOUND ? score + ply : score <= -MATE_BOUND ? score - ply : score;
+    }
+
+    private static int scoreFromTable(int score, int ply){
+        return score >= MATE_BOUND ? score - ply : score <= -MATE_BOUND ? score + ply : score;
+    }
+
+    private int evaluate(BitBoard board){
+        analysedPositions++;
+        return evaluator.evaluate(board);
+    }
+}
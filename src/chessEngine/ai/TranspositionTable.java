@@ -0,0 +1,162 @@
+package chessEngine.ai;
+
+import java.util.Arrays;
+
+public class TranspositionTable {
+
+    public static final int NONE = 0;
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    // Each bucket holds a depth-preferred and an always-replace slot of two longs each: (key ^ data, data)
+    private static final int LONGS_PER_BUCKET = 4;
+
+    private static final int MOVE_BITS = 20;
+    private static final int SCORE_SHIFT = 20;
+    private static final int DEPTH_SHIFT = 36;
+    private static final int BOUND_SHIFT = 44;
+    private static final int AGE_SHIFT = 46;
+
+    private final long[] table;
+    private final int bucketMask;
+
+    private int age;
+
+    // Plain fields: updated racily when several threads share the table, so treat them as estimates
+    private long probes;
+    private long hits;
+    private long stores;
+
+    public TranspositionTable(int sizeMb){
+
+        long bytes = Math.max(1, sizeMb) * 1024L * 1024L;
+        long buckets = Long.highestOneBit(bytes / (LONGS_PER_BUCKET * 8));
+
+        if(buckets * LONGS_PER_BUCKET > Integer.MAX_VALUE - 8){
+            buckets = Integer.highestOneBit((Integer.MAX_VALUE - 8) / LONGS_PER_BUCKET);
+        }
+
+        table = new long[(int) buckets * LONGS_PER_BUCKET];
+        bucketMask = (int) buckets - 1;
+    }
+
+    public int sizeMb(){
+        return (int)((long) table.length * 8 / (1024 * 1024));
+    }
+
+    public void clear(){
+        Arrays.fill(table, 0L);
+        age = 0;
+        probes = 0;
+        hits = 0;
+        stores = 0;
+    }
+
+    // Called once per search so entries from earlier searches become preferred victims
+    public void newSearch(){
+        age = (age + 1) & 63;
+    }
+
+    // Returns the packed entry data for the key, or 0 on a miss
+    public long probe(long key){
+
+        probes++;
+
+        int index = ((int) key & bucketMask) * LONGS_PER_BUCKET;
+
+        long data = table[index + 1];
+        if((table[index] ^ data) == key && data != 0){
+            hits++;
+            return data;
+        }
+
+        data = table[index + 3];
+        if((table[index + 2] ^ data) == key && data != 0){
+            hits++;
+            return data;
+        }
+
+        return 0L;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound){
+
+        stores++;
+
+        long data = (move & ((1L << MOVE_BITS) - 1))
+                | ((long)(score & 0xFFFF) << SCORE_SHIFT)
+                | ((long)(depth & 0xFF) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) age << AGE_SHIFT);
+
+        int index = ((int) key & bucketMask) * LONGS_PER_BUCKET;
+
+        long old = table[index + 1];
+        boolean sameKey = (table[index] ^ old) == key;
+
+        // Keep the move from a previous visit when this store has none
+        if(sameKey && move == 0) data |= old & ((1L << MOVE_BITS) - 1);
+
+        if(sameKey || old == 0 || age(old) != age || depth >= depth(old)){
+            table[index] = key ^ data;
+            table[index + 1] = data;
+        }else{
+            table[index + 2] = key ^ data;
+            table[index + 3] = data;
+        }
+    }
+
+    public static int move(long data){
+        return (int)(data & ((1L << MOVE_BITS) - 1));
+    }
+
+    public static int score(long data){
+        return (short)(data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data){
+        return (byte)(data >>> DEPTH_SHIFT);
+    }
+
+    public static int bound(long data){
+        return (int)(data >>> BOUND_SHIFT) & 3;
+    }
+
+    private static int age(long data){
+        return (int)(data >>> AGE_SHIFT) & 63;
+    }
+
+    public long getProbes(){
+        return probes;
+    }
+
+    public long getHits(){
+        return hits;
+    }
+
+    public long getStores(){
+        return stores;
+    }
+
+    public double hitRate(){
+        return probes == 0 ? 0.0 : (double) hits / probes;
+    }
+
+    // Permille of sampled slots holding an entry from the current search, as reported by UCI engines
+    public int hashfull(){
+
+        int sampledBuckets = Math.min(500, bucketMask + 1);
+        int used = 0;
+
+        for(int i = 0; i < sampledBuckets; i++){
+
+            int index = i * LONGS_PER_BUCKET;
+
+            if(table[index + 1] != 0 && age(table[index + 1]) == age) used++;
+            if(table[index + 3] != 0 && age(table[index + 3]) == age) used++;
+        }
+
+        return used * 1000 / (sampledBuckets * 2);
+    }
+}
@@ -0,0 +1,46 @@
+package chessEngine.analysis;
+
+import chessEngine.ai.*;
+import chessEngine.gameState.*;
+
+// Result of searching one position to a fixed depth. Shared between every caller that asked for it, so
+// it is immutable.
+public final class Analysis {
+
+    public final long key;
+    public final int depth;
+    // Move.NONE when the side to move has no legal moves
+    public final int move;
+    // Centipawns from the side to move's point of view
+    public final int score;
+    public final int[] pv;
+
+    Analysis(long key, int depth, int move, int score, int[] pv){
+        this.key = key;
+        this.depth = depth;
+        this.move = move;
+        this.score = score;
+        this.pv = pv;
+    }
+
+    public ChessMove bestMove(){
+        return move == Move.NONE ? null : new ChessMove(move);
+    }
+
+    public boolean isMate(){
+        return Math.abs(score) >= AdvancedAI.MATE_SCORE - AdvancedAI.MAX_PLY;
+    }
+
+    public String toString(){
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(move == Move.NONE ? "none" : Move.toString(move)).append(' ').append(score).append(" depth ").append(depth).append(" pv");
+
+        for(int pvMove : pv){
+            sb.append(' ').append(Move.toString(pvMove));
+        }
+
+        return sb.toString();
+    }
+}
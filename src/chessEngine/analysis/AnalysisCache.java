@@ -0,0 +1,69 @@
+package chessEngine.analysis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Finished analyses keyed by (Zobrist key, depth), evicting the least recently used one beyond capacity.
+// Lookups are far cheaper than the searches they save, so a single lock is enough.
+public class AnalysisCache {
+
+    private final int capacity;
+    private final LinkedHashMap<PositionKey, Analysis> entries;
+
+    private long hits;
+    private long misses;
+
+    public AnalysisCache(int capacity){
+
+        this.capacity = Math.max(1, capacity);
+
+        entries = new LinkedHashMap<PositionKey, Analysis>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PositionKey, Analysis> eldest){
+                return size() > AnalysisCache.this.capacity;
+            }
+        };
+    }
+
+    // Returns null on a miss
+    public synchronized Analysis get(long key, int depth){
+
+        Analysis analysis = entries.get(new PositionKey(key, depth));
+
+        if(analysis == null){
+            misses++;
+        }else{
+            hits++;
+        }
+
+        return analysis;
+    }
+
+    public synchronized void put(Analysis analysis){
+        entries.put(new PositionKey(analysis.key, analysis.depth), analysis);
+    }
+
+    public synchronized void clear(){
+        entries.clear();
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    public int capacity(){
+        return capacity;
+    }
+
+    public synchronized long getHits(){
+        return hits;
+    }
+
+    public synchronized long getMisses(){
+        return misses;
+    }
+
+    public synchronized double hitRate(){
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+}
@@ -0,0 +1,236 @@
+package chessEngine.analysis;
+
+import chessEngine.ai.*;
+import chessEngine.gameState.*;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Fixed-depth analysis for many callers at once. Positions are identified by Zobrist key, so the same
+// position reached by different move orders is one request. A request is answered, in order of preference,
+// from the cache of finished analyses, by joining a search already running for it, or by a new search on
+// one of the worker engines.
+//
+// Coalescing goes by key and depth alone, so the halfmove clock and the moves that led to a position are
+// ignored: the search runs on a copy with its clock reset, and draws by repetition or the fifty-move rule
+// before the position are not seen. Engines keep their transposition tables between searches, so scores
+// and even moves can differ a little from what a fresh search would give; any of those answers is as good
+// as another to the callers sharing it.
+public class BatchAnalyzer implements ChessAI {
+
+    private final int depth;
+
+    private final AnalysisCache cache;
+    private final Map<PositionKey, CompletableFuture<Analysis>> inFlight = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor;
+    // One engine per worker; engines are not thread-safe, so a search takes one for its duration
+    private final BlockingQueue<AdvancedAI> engines;
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public BatchAnalyzer(int depth, int workers, int hashMbPerWorker, int cacheEntries){
+
+        this.depth = depth;
+
+        cache = new AnalysisCache(cacheEntries);
+        engines = new ArrayBlockingQueue<>(workers);
+
+        for(int i = 0; i < workers; i++){
+            engines.add(new AdvancedAI(depth, hashMbPerWorker));
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "analysis-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public BatchAnalyzer(int depth){
+        this(depth, Runtime.getRuntime().availableProcessors(), 16, 100000);
+    }
+
+    public CompletableFuture<Analysis> analyze(BitBoard board, int depth){
+
+        long key = board.key;
+
+        Analysis cached = cache.get(key, depth);
+
+        if(cached != null) return CompletableFuture.completedFuture(cached);
+
+        PositionKey id = new PositionKey(key, depth);
+        CompletableFuture<Analysis> result = new CompletableFuture<>();
+        CompletableFuture<Analysis> running = inFlight.putIfAbsent(id, result);
+
+        if(running != null){
+            coalesced.incrementAndGet();
+            return running;
+        }
+
+        // A search finishing between the cache lookup and here is repeated; that is rare and only costs time
+        BitBoard position = new BitBoard(board);
+
+        // Without a clock the history is never consulted, so the answer depends on the key alone
+        position.halfmoveClock = 0;
+
+        executor.execute(() -> {
+            try{
+
+                Analysis analysis = search(position, depth);
+
+                // Cached before leaving inFlight, so later requests always find one or the other
+                cache.put(analysis);
+                inFlight.remove(id, result);
+                result.complete(analysis);
+
+            }catch(Throwable t){
+                inFlight.remove(id, result);
+                result.completeExceptionally(t);
+            }
+        });
+
+        return result;
+    }
+
+    public CompletableFuture<Analysis> analyze(ChessBoard board, int depth){
+        return analyze(board.toBitBoard(), depth);
+    }
+
+    // One future per position, in the order given; duplicates within the batch share a future, whatever
+    // their halfmove clocks and histories
+    public List<CompletableFuture<Analysis>> analyze(List<BitBoard> positions, int depth){
+
+        Map<Long, CompletableFuture<Analysis>> unique = new HashMap<>();
+        List<CompletableFuture<Analysis>> results = new ArrayList<>(positions.size());
+
+        for(BitBoard board : positions){
+
+            CompletableFuture<Analysis> result = unique.get(board.key);
+
+            if(result == null){
+                result = analyze(board, depth);
+                unique.put(board.key, result);
+            }
+
+            results.add(result);
+        }
+
+        return results;
+    }
+
+    // Completes once every position has been analysed, with the analyses in the order given
+    public CompletableFuture<List<Analysis>> analyzeAll(List<BitBoard> positions, int depth){
+
+        List<CompletableFuture<Analysis>> results = analyze(positions, depth);
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+
+            List<Analysis> analyses = new ArrayList<>(results.size());
+
+            for(CompletableFuture<Analysis> result : results){
+                analyses.add(result.join());
+            }
+
+            return analyses;
+        });
+    }
+
+    @Override
+    public ChessMove getAIMove(ChessBoard board){
+        return analyze(board, depth).join().bestMove();
+    }
+
+    // Only the depth limit is used: results found under a time limit could not be shared
+    @Override
+    public ChessMove getAIMove(ChessBoard board, SearchLimits limits){
+        return analyze(board, limits.depth > 0 ? limits.depth : depth).join().bestMove();
+    }
+
+    private Analysis search(BitBoard board, int depth) throws InterruptedException {
+
+        AdvancedAI ai = engines.take();
+
+        try{
+
+            searches.incrementAndGet();
+
+            ChessMove best = ai.getAIMove(board.toChessBoard(), SearchLimits.depth(depth));
+            ChessMove[] principalVariation = ai.getPrincipalVariation();
+
+            int[] pv = new int[principalVariation.length];
+
+            for(int i = 0; i < pv.length; i++){
+                pv[i] = principalVariation[i].toMove();
+            }
+
+            return new Analysis(board.key, depth, best == null ? Move.NONE : best.toMove(), ai.getLastScore(), pv);
+
+        }finally{
+            engines.add(ai);
+        }
+    }
+
+    public AnalysisCache getCache(){
+        return cache;
+    }
+
+    // Searches actually run, as opposed to requests answered by the cache or by joining a running search
+    public long getSearches(){
+        return searches.get();
+    }
+
+    public long getCoalesced(){
+        return coalesced.get();
+    }
+
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+
+    // Usage: BatchAnalyzer <epd file> [depth] [workers]
+    public static void main(String[] args) throws IOException {
+
+        if(args.length < 1){
+            System.out.println("Usage: BatchAnalyzer <epd file> [depth] [workers]");
+            return;
+        }
+
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        List<BitBoard> positions = new ArrayList<>();
+
+        EpdReader.read(Paths.get(args[0]), record -> positions.add(new BitBoard(record.board())));
+
+        BatchAnalyzer analyzer = new BatchAnalyzer(depth, workers, 16, 100000);
+
+        long start = System.currentTimeMillis();
+        List<Analysis> analyses = analyzer.analyzeAll(positions, depth).join();
+        long time = System.currentTimeMillis() - start;
+
+        for(int i = 0; i < positions.size(); i++){
+            System.out.println(Fen.toFen(positions.get(i)) + " ; " + analyses.get(i));
+        }
+
+        System.out.println(positions.size() + " positions, " + analyzer.getSearches() + " searched, " + analyzer.getCoalesced()
+                + " coalesced, " + analyzer.getCache().getHits() + " cached, " + time + "ms");
+
+        analyzer.shutdown();
+    }
+}
@@ -0,0 +1,28 @@
+package chessEngine.analysis;
+
+// A position searched to a depth; the same position at another depth is a different request
+final class PositionKey {
+
+    final long key;
+    final int depth;
+
+    PositionKey(long key, int depth){
+        this.key = key;
+        this.depth = depth;
+    }
+
+    @Override
+    public boolean equals(Object o){
+
+        if(!(o instanceof PositionKey)) return false;
+
+        PositionKey other = (PositionKey) o;
+
+        return key == other.key && depth == other.depth;
+    }
+
+    @Override
+    public int hashCode(){
+        return Long.hashCode(key) * 31 + depth;
+    }
+}
@@ -0,0 +1,185 @@
+package chessEngine.book;
+
+import chessEngine.gameState.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Builds an OpeningBook file from PGN games. Every move in the first maxPlies plies of each decided game is
+// counted, weighted like Polyglot does by default: 2 for a win of the side that played it, 1 for a draw,
+// 0 for a loss. Moves seen in fewer than minGames games, or never in a game their side did not lose,
+// are left out.
+public class BookBuilder {
+
+    private final int maxPlies;
+    private final int minGames;
+
+    // Position key -> move -> {weight, games}
+    private final Map<Long, Map<Integer, int[]>> positions = new HashMap<>();
+
+    private long games;
+    private long skipped;
+
+    public BookBuilder(int maxPlies, int minGames){
+        this.maxPlies = maxPlies;
+        this.minGames = minGames;
+    }
+
+    public void add(PgnGame game){
+
+        if(!game.isDecided()){
+            skipped++;
+            return;
+        }
+
+        BitBoard board;
+
+        try{
+            board = game.startPosition();
+        }catch(IllegalArgumentException e){
+            skipped++;
+            return;
+        }
+
+        games++;
+
+        int whiteScore = game.whiteScore();
+
+        for(int ply = 0; ply < maxPlies && ply < game.moves.size(); ply++){
+
+            int move = San.parse(board, game.moves.get(ply));
+
+            // The rest of a game with a bad move in it is not trusted
+            if(move == Move.NONE) break;
+
+            int score = board.sideToMove == BitBoard.WHITE ? whiteScore : -whiteScore;
+
+            int[] stats = positions.computeIfAbsent(board.key, key -> new HashMap<>()).computeIfAbsent(move & 0x7FFF, m -> new int[2]);
+            stats[0] += score + 1;
+            stats[1]++;
+
+            board.makeMove(move);
+        }
+    }
+
+    public long addPgn(Path path) throws IOException {
+        return PgnReader.read(path, this::add);
+    }
+
+    public long getGames(){
+        return games;
+    }
+
+    public long getSkipped(){
+        return skipped;
+    }
+
+    // Writes the book, sorted by key and then by descending weight; returns the number of entries
+    public int write(Path path) throws IOException {
+
+        List<long[]> entries = new ArrayList<>();
+
+        for(Map.Entry<Long, Map<Integer, int[]>> position : positions.entrySet()){
+
+            int maxWeight = 0;
+
+            for(int[] stats : position.getValue().values()){
+                maxWeight = Math.max(maxWeight, stats[0]);
+            }
+
+            // Weights are 16 bits in the file; a very popular position is scaled down to fit
+            double scale = maxWeight > 0xFFFF ? (double) 0xFFFF / maxWeight : 1;
+
+            for(Map.Entry<Integer, int[]> move : position.getValue().entrySet()){
+
+                int[] stats = move.getValue();
+                int weight = (int) (stats[0] * scale);
+
+                if(stats[1] < minGames || weight == 0) continue;
+
+                entries.add(new long[]{position.getKey(), move.getKey(), weight, stats[1]});
+            }
+        }
+
+        entries.sort((a, b) -> a[0] != b[0] ? Long.compareUnsigned(a[0], b[0]) : Long.compare(b[2], a[2]));
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+
+            for(long[] entry : entries){
+
+                if(buffer.remaining() < OpeningBook.ENTRY_SIZE) drain(buffer, channel);
+
+                buffer.putLong(entry[0]);
+                buffer.putShort((short) entry[1]);
+                buffer.putShort((short) entry[2]);
+                buffer.putInt((int) Math.min(entry[3], Integer.MAX_VALUE));
+            }
+
+            drain(buffer, channel);
+        }
+
+        return entries.size();
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+
+        buffer.flip();
+
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    // Usage: BookBuilder <book file> <pgn file>... [--plies n] [--min-games n]
+    public static void main(String[] args) throws IOException {
+
+        int plies = 24;
+        int minGames = 2;
+
+        List<Path> inputs = new ArrayList<>();
+        Path output = null;
+
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "--plies": plies = Integer.parseInt(args[++i]); break;
+                case "--min-games": minGames = Integer.parseInt(args[++i]); break;
+                default:
+                    if(output == null){
+                        output = Paths.get(args[i]);
+                    }else{
+                        inputs.add(Paths.get(args[i]));
+                    }
+            }
+        }
+
+        if(output == null || inputs.isEmpty()){
+            System.out.println("Usage: BookBuilder <book file> <pgn file>... [--plies n] [--min-games n]");
+            return;
+        }
+
+        BookBuilder builder = new BookBuilder(plies, minGames);
+
+        long start = System.currentTimeMillis();
+
+        for(Path input : inputs){
+            builder.addPgn(input);
+        }
+
+        int entries = builder.write(output);
+
+        System.out.println(builder.getGames() + " games (" + builder.getSkipped() + " skipped), " + entries + " entries written to "
+                + output + " in " + (System.currentTimeMillis() - start) + "ms");
+    }
+}
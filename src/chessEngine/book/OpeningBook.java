@@ -0,0 +1,140 @@
+package chessEngine.book;
+
+import chessEngine.gameState.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+// Read-only opening book, memory-mapped so a lookup is a binary search over the file itself and every
+// engine process on the host shares the same page cache copy. The file is a sorted array of 16-byte
+// big-endian records in the Polyglot layout:
+//
+//   long key       Zobrist key of the position (our own keys, not Polyglot's), sorted as unsigned
+//   short move     from, to and promotion as in Move, without flags
+//   short weight   relative frequency of the move; moves of one position are stored highest weight first
+//   int games      number of games the move was seen in
+public class OpeningBook implements Closeable {
+
+    public static final int ENTRY_SIZE = 16;
+
+    private final FileChannel channel;
+    // Only read with absolute gets, so any number of threads can probe at once
+    private final ByteBuffer entries;
+    private final int size;
+
+    private OpeningBook(FileChannel channel, ByteBuffer entries){
+        this.channel = channel;
+        this.entries = entries;
+        this.size = entries.capacity() / ENTRY_SIZE;
+    }
+
+    public static OpeningBook open(Path path) throws IOException {
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        long length = channel.size();
+
+        if(length % ENTRY_SIZE != 0 || length / ENTRY_SIZE > Integer.MAX_VALUE / ENTRY_SIZE){
+            channel.close();
+            throw new IOException("Not an opening book: " + path);
+        }
+
+        return new OpeningBook(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+    }
+
+    public int size(){
+        return size;
+    }
+
+    // Fills moves and weights with the book moves for the position, highest weight first; returns the count
+    public int probe(long key, int[] moves, int[] weights){
+
+        int count = 0;
+
+        for(int i = lowerBound(key); i < size && key(i) == key && count < moves.length; i++){
+            moves[count] = entries.getShort(i * ENTRY_SIZE + 8) & 0x7FFF;
+            weights[count] = entries.getShort(i * ENTRY_SIZE + 10) & 0xFFFF;
+            count++;
+        }
+
+        return count;
+    }
+
+    public boolean contains(long key){
+        int index = lowerBound(key);
+        return index < size && key(index) == key;
+    }
+
+    // A legal book move chosen with probability proportional to its weight, or Move.NONE if there is none
+    public int pick(BitBoard board, Random random){
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int[] weights = new int[MoveGenerator.MAX_MOVES];
+
+        int count = probe(board.key, moves, weights);
+        int total = 0;
+
+        // A key collision could put another position's moves here, so every move is checked against the board
+        for(int i = 0; i < count; i++){
+
+            moves[i] = MoveGenerator.resolve(board, moves[i]);
+
+            if(moves[i] == Move.NONE) weights[i] = 0;
+
+            total += weights[i];
+        }
+
+        if(total == 0) return Move.NONE;
+
+        int target = random.nextInt(total);
+
+        for(int i = 0; i < count; i++){
+
+            target -= weights[i];
+
+            if(target < 0) return moves[i];
+        }
+
+        return Move.NONE;
+    }
+
+    public ChessMove pick(ChessBoard board, Random random){
+        int move = pick(board.toBitBoard(), random);
+        return move == Move.NONE ? null : new ChessMove(move);
+    }
+
+    // First entry whose key is not below key
+    private int lowerBound(long key){
+
+        int low = 0;
+        int high = size;
+
+        while(low < high){
+
+            int mid = (low + high) >>> 1;
+
+            if(Long.compareUnsigned(key(mid), key) < 0){
+                low = mid + 1;
+            }else{
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    private long key(int index){
+        return entries.getLong(index * ENTRY_SIZE);
+    }
+
+    // The mapping itself stays valid until it is garbage collected
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,140 @@
+package chessEngine.gameState;
+
+import static chessEngine.gameState.BitBoard.*;
+
+// Attack information for one position, worked out once by update() and then answered with a few bitboard
+// operations: the squares each side and each piece type attacks, the pieces checking the side to move, the
+// pinned pieces of both sides, and the attackers of any square, x-ray attackers behind them included.
+// A map describes the board as it was at update(); one instance can be reused for many positions.
+public final class AttackMap {
+
+    private BitBoard board;
+
+    // Squares attacked by each piece code, and by each colour
+    private final long[] pieceAttacks = new long[12];
+    private final long[] attacks = new long[2];
+    private final long[] pinned = new long[2];
+    private long checkers;
+
+    public AttackMap(){}
+
+    public AttackMap(BitBoard board){
+        update(board);
+    }
+
+    public void update(BitBoard board){
+
+        this.board = board;
+
+        long occupied = board.occupied;
+
+        for(int color = 0; color < 2; color++){
+
+            int base = color * 6;
+            long pawns = board.pieces[base + PAWN];
+
+            pieceAttacks[base + PAWN] = color == WHITE
+                    ? ((pawns << 7) & ~Attacks.FILE_H) | ((pawns << 9) & ~Attacks.FILE_A)
+                    : ((pawns >>> 9) & ~Attacks.FILE_H) | ((pawns >>> 7) & ~Attacks.FILE_A);
+
+            for(int type = KNIGHT; type <= KING; type++){
+
+                long pieces = board.pieces[base + type];
+                long covered = 0L;
+
+                while(pieces != 0){
+
+                    int sq = Long.numberOfTrailingZeros(pieces);
+                    pieces &= pieces - 1;
+
+                    switch(type){
+                        case KNIGHT: covered |= Attacks.KNIGHT[sq]; break;
+                        case BISHOP: covered |= Attacks.bishop(sq, occupied); break;
+                        case ROOK: covered |= Attacks.rook(sq, occupied); break;
+                        case QUEEN: covered |= Attacks.queen(sq, occupied); break;
+                        default: covered |= Attacks.KING[sq];
+                    }
+                }
+
+                pieceAttacks[base + type] = covered;
+            }
+
+            long all = 0L;
+
+            for(int type = PAWN; type <= KING; type++){
+                all |= pieceAttacks[base + type];
+            }
+
+            attacks[color] = all;
+
+            int king = board.kingSquare(color);
+            pinned[color] = king == NO_SQUARE ? 0L : MoveGenerator.pinnedPieces(board, color, king);
+        }
+
+        int king = board.kingSquare(board.sideToMove);
+        checkers = king == NO_SQUARE ? 0L : board.attackersTo(king, occupied) & board.colors[board.sideToMove ^ 1];
+    }
+
+    public BitBoard board(){
+        return board;
+    }
+
+    public long attacks(int color){
+        return attacks[color];
+    }
+
+    public long attacks(int color, int type){
+        return pieceAttacks[pieceCode(color, type)];
+    }
+
+    public boolean isAttacked(int sq, int byColor){
+        return (attacks[byColor] & 1L << sq) != 0;
+    }
+
+    // Pieces of either colour attacking sq
+    public long attackersTo(int sq){
+        return board.attackersTo(sq, board.occupied);
+    }
+
+    public long attackersTo(int sq, int color){
+        return board.attackersTo(sq, board.occupied) & board.colors[color];
+    }
+
+    // Sliders of the colour that would attack sq if the first piece on their line towards it moved away
+    public long xrayAttackersTo(int sq, int color){
+
+        long occupied = board.occupied;
+
+        long diagonal = (board.pieces(color, BISHOP) | board.pieces(color, QUEEN)) & ~Attacks.bishop(sq, occupied);
+        long straight = (board.pieces(color, ROOK) | board.pieces(color, QUEEN)) & ~Attacks.rook(sq, occupied);
+
+        long diagonalBlockers = Attacks.bishop(sq, occupied) & occupied;
+        long straightBlockers = Attacks.rook(sq, occupied) & occupied;
+
+        return (Attacks.bishop(sq, occupied ^ diagonalBlockers) & diagonal)
+                | (Attacks.rook(sq, occupied ^ straightBlockers) & straight);
+    }
+
+    // Pieces giving check to the side to move
+    public long checkers(){
+        return checkers;
+    }
+
+    public boolean isInCheck(){
+        return checkers != 0;
+    }
+
+    public boolean isInCheck(int color){
+        long king = board.pieces[pieceCode(color, KING)];
+        return (attacks[color ^ 1] & king) != 0;
+    }
+
+    // Pieces of the colour that cannot leave the line between their king and an enemy slider
+    public long pinned(int color){
+        return pinned[color];
+    }
+
+    public int staticExchange(int move){
+        return StaticExchange.evaluate(this, move);
+    }
+}
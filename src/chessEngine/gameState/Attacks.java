@@ -0,0 +1,218 @@
+package chessEngine.gameState;
+
+public final class Attacks {
+
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    public static final long[] KNIGHT = new long[64];
+    public static final long[] KING = new long[64];
+    public static final long[][] PAWN = new long[2][64];
+
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    private static final long[] ROOK_MASK = new long[64];
+    private static final long[] ROOK_MAGIC = new long[64];
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final int[] ROOK_OFFSET = new int[64];
+    private static final long[] ROOK_TABLE;
+
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final long[] BISHOP_MAGIC = new long[64];
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final int[] BISHOP_OFFSET = new int[64];
+    private static final long[] BISHOP_TABLE;
+
+    // Per-rank PRNG seeds that find working magics quickly, keeping class initialisation cheap
+    private static final long[] MAGIC_SEEDS = {728, 10316, 55013, 32803, 12281, 15100, 16645, 255};
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private Attacks(){}
+
+    static {
+
+        int[][] knightSteps = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+        int[][] kingSteps = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+
+        for(int sq = 0; sq < 64; sq++){
+
+            int x = sq & 7;
+            int y = sq >>> 3;
+
+            for(int[] step : knightSteps){
+                KNIGHT[sq] |= bit(x + step[0], y + step[1]);
+            }
+
+            for(int[] step : kingSteps){
+                KING[sq] |= bit(x + step[0], y + step[1]);
+            }
+
+            PAWN[BitBoard.WHITE][sq] = bit(x - 1, y + 1) | bit(x + 1, y + 1);
+            PAWN[BitBoard.BLACK][sq] = bit(x - 1, y - 1) | bit(x + 1, y - 1);
+
+            for(int[] d : kingSteps){
+
+                long line = (1L << sq) | slidingAttacks(sq, 0L, new int[][]{d, {-d[0], -d[1]}});
+                long ray = 0L;
+
+                for(int tx = x + d[0], ty = y + d[1]; tx >= 0 && tx < 8 && ty >= 0 && ty < 8; tx += d[0], ty += d[1]){
+                    BETWEEN[sq][ty * 8 + tx] = ray;
+                    LINE[sq][ty * 8 + tx] = line;
+                    ray |= 1L << (ty * 8 + tx);
+                }
+            }
+        }
+
+        ROOK_TABLE = initMagics(ROOK_DIRECTIONS, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_OFFSET);
+        BISHOP_TABLE = initMagics(BISHOP_DIRECTIONS, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_OFFSET);
+    }
+
+    public static long rook(int sq, long occupied){
+        return ROOK_TABLE[ROOK_OFFSET[sq] + (int)(((occupied & ROOK_MASK[sq]) * ROOK_MAGIC[sq]) >>> ROOK_SHIFT[sq])];
+    }
+
+    public static long bishop(int sq, long occupied){
+        return BISHOP_TABLE[BISHOP_OFFSET[sq] + (int)(((occupied & BISHOP_MASK[sq]) * BISHOP_MAGIC[sq]) >>> BISHOP_SHIFT[sq])];
+    }
+
+    public static long queen(int sq, long occupied){
+        return rook(sq, occupied) | bishop(sq, occupied);
+    }
+
+    // Squares strictly between a and b, or 0 if they do not share a rank, file or diagonal
+    public static long between(int a, int b){
+        return BETWEEN[a][b];
+    }
+
+    // The full rank, file or diagonal through a and b, or 0 if they are not aligned
+    public static long line(int a, int b){
+        return LINE[a][b];
+    }
+
+    private static long bit(int x, int y){
+        return x < 0 || x > 7 || y < 0 || y > 7 ? 0L : 1L << (y * 8 + x);
+    }
+
+    private static long slidingAttacks(int sq, long occupied, int[][] directions){
+
+        long attacks = 0L;
+
+        for(int[] d : directions){
+
+            int x = (sq & 7) + d[0];
+            int y = (sq >>> 3) + d[1];
+
+            while(x >= 0 && x < 8 && y >= 0 && y < 8){
+
+                long b = 1L << (y * 8 + x);
+                attacks |= b;
+
+                if((occupied & b) != 0) break;
+
+                x += d[0];
+                y += d[1];
+            }
+        }
+
+        return attacks;
+    }
+
+    private static long relevantMask(int sq, int[][] directions){
+
+        long mask = 0L;
+
+        for(int[] d : directions){
+
+            int x = (sq & 7) + d[0];
+            int y = (sq >>> 3) + d[1];
+
+            // The last square of each ray never blocks anything, so it is left out of the key
+            while(x + d[0] >= 0 && x + d[0] < 8 && y + d[1] >= 0 && y + d[1] < 8){
+                mask |= 1L << (y * 8 + x);
+                x += d[0];
+                y += d[1];
+            }
+        }
+
+        return mask;
+    }
+
+    private static long nextRandom(long[] seed){
+        seed[0] ^= seed[0] >>> 12;
+        seed[0] ^= seed[0] << 25;
+        seed[0] ^= seed[0] >>> 27;
+        return seed[0] * 0x2545F4914F6CDD1DL;
+    }
+
+    private static long[] initMagics(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets){
+
+        int size = 0;
+
+        for(int sq = 0; sq < 64; sq++){
+            masks[sq] = relevantMask(sq, directions);
+            offsets[sq] = size;
+            size += 1 << Long.bitCount(masks[sq]);
+        }
+
+        long[] table = new long[size];
+
+        long[] occupancies = new long[4096];
+        long[] references = new long[4096];
+        long[] used = new long[4096];
+        int[] epoch = new int[4096];
+        int attempt = 0;
+
+        for(int sq = 0; sq < 64; sq++){
+
+            int bits = Long.bitCount(masks[sq]);
+            int count = 1 << bits;
+            shifts[sq] = 64 - bits;
+
+            long subset = 0L;
+            for(int i = 0; i < count; i++){
+                occupancies[i] = subset;
+                references[i] = slidingAttacks(sq, subset, directions);
+                subset = (subset - masks[sq]) & masks[sq];
+            }
+
+            long[] seed = {MAGIC_SEEDS[sq >>> 3]};
+
+            while(true){
+
+                long magic = nextRandom(seed) & nextRandom(seed) & nextRandom(seed);
+
+                if(Long.bitCount((masks[sq] * magic) & 0xFF00000000000000L) < 6) continue;
+
+                // Slots written during an earlier attempt count as empty, which saves clearing the table each time
+                attempt++;
+
+                boolean ok = true;
+
+                for(int i = 0; i < count && ok; i++){
+
+                    int index = (int)((occupancies[i] * magic) >>> shifts[sq]);
+
+                    if(epoch[index] != attempt){
+                        epoch[index] = attempt;
+                        used[index] = references[i];
+                    }else if(used[index] != references[i]){
+                        ok = false;
+                    }
+                }
+
+                if(ok){
+                    magics[sq] = magic;
+                    System.arraycopy(used, 0, table, offsets[sq], count);
+                    break;
+                }
+            }
+        }
+
+        return table;
+    }
+}
@@ -0,0 +1,482 @@
+package chessEngine.gameState;
+
+import java.util.Arrays;
+
+public class BitBoard {
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    public static final int EMPTY = 12;
+    public static final int NO_SQUARE = -1;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    private static final ChessPiece[] PIECES = {
+            ChessPiece.wPawn, ChessPiece.wKnight, ChessPiece.wBish, ChessPiece.wRook, ChessPiece.wQueen, ChessPiece.wKing,
+            ChessPiece.bPawn, ChessPiece.bKnight, ChessPiece.bBish, ChessPiece.bRook, ChessPiece.bQueen, ChessPiece.bKing,
+            ChessPiece.none
+    };
+
+    // a1, c1, ..., b2, d2, ...
+    private static final long DARK_SQUARES = 0xAA55AA55AA55AA55L;
+
+    // Rights that survive a move touching each square; rook and king home squares clear theirs
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[0] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[7] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[56] &= ~BLACK_QUEENSIDE;
+        CASTLING_MASK[63] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+    }
+
+    public final long[] pieces = new long[12];
+    public final long[] colors = new long[2];
+    public long occupied;
+
+    public final int[] mailbox = new int[64];
+
+    public int sideToMove;
+    public int castlingRights;
+    public int epSquare = NO_SQUARE;
+
+    // Plies since the last capture or pawn move, and the move number, as in FEN
+    public int halfmoveClock;
+    public int fullmoveNumber = 1;
+
+    // Zobrist key, kept up to date by every change to the position
+    public long key;
+
+    // Material and piece-square sums from white's side plus the game phase, kept up to date the same way
+    public int mgScore;
+    public int egScore;
+    public int phase;
+
+    // Undo stack: the move made and the state it destroyed (captured piece, castling rights, en-passant square,
+    // halfmove clock, key). The keys double as the repetition history of the moves made on this board.
+    private int[] undoMoves = new int[256];
+    private int[] undoStates = new int[256];
+    private long[] undoKeys = new long[256];
+    private int undoDepth;
+
+    // Shared by every board without one, so clearing a board for each parsed position allocates nothing
+    static final long[] NO_HISTORY = new long[0];
+
+    // Keys of the positions before this board was set up, oldest first, back to the last capture or pawn move
+    private long[] history = NO_HISTORY;
+
+    public BitBoard(){
+        Arrays.fill(mailbox, EMPTY);
+    }
+
+    public BitBoard(BitBoard other){
+        System.arraycopy(other.pieces, 0, pieces, 0, 12);
+        System.arraycopy(other.colors, 0, colors, 0, 2);
+        System.arraycopy(other.mailbox, 0, mailbox, 0, 64);
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        epSquare = other.epSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        history = other.history();
+        key = other.key;
+        mgScore = other.mgScore;
+        egScore = other.egScore;
+        phase = other.phase;
+    }
+
+    public BitBoard(ChessBoard board){
+
+        this();
+
+        for(int x = 0; x < 8; x++){
+            for(int y = 0; y < 8; y++){
+
+                ChessPiece piece = board.boardState[x][y];
+
+                if(piece == ChessPiece.wEpPawn || piece == ChessPiece.bEpPawn){
+                    epSquare = square(x, y);
+                }else if(piece != ChessPiece.none){
+                    put(pieceCode(piece), square(x, y));
+                }
+            }
+        }
+
+        sideToMove = board.isWhiteTurn ? WHITE : BLACK;
+
+        if(board.castlingInfo[0][0]) castlingRights |= WHITE_QUEENSIDE;
+        if(board.castlingInfo[0][1]) castlingRights |= WHITE_KINGSIDE;
+        if(board.castlingInfo[1][0]) castlingRights |= BLACK_QUEENSIDE;
+        if(board.castlingInfo[1][1]) castlingRights |= BLACK_KINGSIDE;
+
+        halfmoveClock = board.halfmoveClock;
+        fullmoveNumber = board.fullmoveNumber;
+        history = board.history();
+
+        key = board.zobristKey();
+    }
+
+    public ChessBoard toChessBoard(){
+
+        ChessPiece[][] boardState = new ChessPiece[8][8];
+
+        for(int sq = 0; sq < 64; sq++){
+            boardState[file(sq)][rank(sq)] = PIECES[mailbox[sq]];
+        }
+
+        if(epSquare != NO_SQUARE){
+            // The ghost pawn belongs to the side that just made the double push
+            boardState[file(epSquare)][rank(epSquare)] = sideToMove == BLACK ? ChessPiece.wEpPawn : ChessPiece.bEpPawn;
+        }
+
+        boolean[][] castlingInfo = {
+                {(castlingRights & WHITE_QUEENSIDE) != 0, (castlingRights & WHITE_KINGSIDE) != 0},
+                {(castlingRights & BLACK_QUEENSIDE) != 0, (castlingRights & BLACK_KINGSIDE) != 0}
+        };
+
+        return new ChessBoard(boardState, castlingInfo, sideToMove == WHITE, halfmoveClock, fullmoveNumber, history());
+    }
+
+    public static BitBoard fromFen(String fen){
+        return Fen.parse(fen);
+    }
+
+    // Empties the board and its undo stack, so one instance can be reused for many positions
+    public void clear(){
+        Arrays.fill(pieces, 0L);
+        Arrays.fill(colors, 0L);
+        Arrays.fill(mailbox, EMPTY);
+        occupied = 0L;
+        sideToMove = WHITE;
+        castlingRights = 0;
+        epSquare = NO_SQUARE;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        key = 0L;
+        mgScore = 0;
+        egScore = 0;
+        phase = 0;
+        undoDepth = 0;
+        history = NO_HISTORY;
+    }
+
+    public static int square(int x, int y){
+        return y * 8 + x;
+    }
+
+    public static int file(int sq){
+        return sq & 7;
+    }
+
+    public static int rank(int sq){
+        return sq >>> 3;
+    }
+
+    public static int pieceCode(int color, int type){
+        return color * 6 + type;
+    }
+
+    public static int pieceType(int code){
+        return code % 6;
+    }
+
+    public static int pieceColor(int code){
+        return code / 6;
+    }
+
+    public static int pieceCode(ChessPiece piece){
+
+        switch(piece){
+            case wPawn: return 0;
+            case wKnight: return 1;
+            case wBish: return 2;
+            case wRook: return 3;
+            case wQueen: return 4;
+            case wKing: return 5;
+            case bPawn: return 6;
+            case bKnight: return 7;
+            case bBish: return 8;
+            case bRook: return 9;
+            case bQueen: return 10;
+            case bKing: return 11;
+            default: return EMPTY;
+        }
+    }
+
+    public static ChessPiece chessPiece(int code){
+        return PIECES[code];
+    }
+
+    public void put(int code, int sq){
+        long b = 1L << sq;
+        pieces[code] |= b;
+        colors[code / 6] |= b;
+        occupied |= b;
+        mailbox[sq] = code;
+        key ^= Zobrist.PIECES[code][sq];
+        mgScore += PieceSquareTables.MG[code][sq];
+        egScore += PieceSquareTables.EG[code][sq];
+        phase += PieceSquareTables.PHASE[code % 6];
+    }
+
+    public void remove(int sq){
+        int code = mailbox[sq];
+        if(code == EMPTY) return;
+        long b = ~(1L << sq);
+        pieces[code] &= b;
+        colors[code / 6] &= b;
+        occupied &= b;
+        mailbox[sq] = EMPTY;
+        key ^= Zobrist.PIECES[code][sq];
+        mgScore -= PieceSquareTables.MG[code][sq];
+        egScore -= PieceSquareTables.EG[code][sq];
+        phase -= PieceSquareTables.PHASE[code % 6];
+    }
+
+    public long pieces(int color, int type){
+        return pieces[color * 6 + type];
+    }
+
+    public int kingSquare(int color){
+        long king = pieces[color * 6 + KING];
+        return king == 0 ? NO_SQUARE : Long.numberOfTrailingZeros(king);
+    }
+
+    public long attackersTo(int sq, long occupied){
+        return (Attacks.PAWN[BLACK][sq] & pieces[PAWN])
+                | (Attacks.PAWN[WHITE][sq] & pieces[6 + PAWN])
+                | (Attacks.KNIGHT[sq] & (pieces[KNIGHT] | pieces[6 + KNIGHT]))
+                | (Attacks.KING[sq] & (pieces[KING] | pieces[6 + KING]))
+                | (Attacks.bishop(sq, occupied) & (pieces[BISHOP] | pieces[6 + BISHOP] | pieces[QUEEN] | pieces[6 + QUEEN]))
+                | (Attacks.rook(sq, occupied) & (pieces[ROOK] | pieces[6 + ROOK] | pieces[QUEEN] | pieces[6 + QUEEN]));
+    }
+
+    public boolean isAttacked(int sq, int byColor){
+        return (attackersTo(sq, occupied) & colors[byColor]) != 0;
+    }
+
+    public boolean isInCheck(int color){
+        int king = kingSquare(color);
+        return king != NO_SQUARE && isAttacked(king, color ^ 1);
+    }
+
+    public boolean isInCheck(){
+        return isInCheck(sideToMove);
+    }
+
+    // Knights, bishops, rooks or queens; without them passing the turn may be the best move (zugzwang)
+    public boolean hasNonPawnMaterial(int color){
+        return (colors[color] & ~pieces[color * 6 + PAWN] & ~pieces[color * 6 + KING]) != 0;
+    }
+
+    // Only a king and at most a knight, or bishops all on one square colour, each side: neither can mate
+    public boolean isInsufficientMaterial(){
+
+        if((pieces[PAWN] | pieces[6 + PAWN] | pieces[ROOK] | pieces[6 + ROOK] | pieces[QUEEN] | pieces[6 + QUEEN]) != 0) return false;
+
+        long knights = pieces[KNIGHT] | pieces[6 + KNIGHT];
+        long bishops = pieces[BISHOP] | pieces[6 + BISHOP];
+
+        if(Long.bitCount(knights | bishops) <= 1) return true;
+
+        return knights == 0 && ((bishops & DARK_SQUARES) == 0 || (bishops & ~DARK_SQUARES) == 0);
+    }
+
+    // Whether the position occurred before with the same side to move. Only plies back to the last capture or
+    // pawn move (or null move) are looked at. An occurrence after the board was set up is enough, since the
+    // line can be repeated again; from the game before it, only a third occurrence counts.
+    public boolean isRepetition(){
+
+        int reversible = Math.min(halfmoveClock, undoDepth + history.length);
+        boolean seenBefore = false;
+
+        for(int back = 4; back <= reversible; back += 2){
+
+            long previous = back <= undoDepth ? undoKeys[undoDepth - back] : history[history.length + undoDepth - back];
+
+            if(previous == key){
+
+                if(back <= undoDepth || seenBefore) return true;
+
+                seenBefore = true;
+            }
+        }
+
+        return false;
+    }
+
+    // Keys of the positions before this one back to the last capture or pawn move, oldest first
+    public long[] history(){
+
+        int length = Math.min(halfmoveClock, undoDepth + history.length);
+
+        if(length == 0) return NO_HISTORY;
+
+        long[] keys = new long[length];
+
+        for(int i = 0; i < length; i++){
+            int back = length - i;
+            keys[i] = back <= undoDepth ? undoKeys[undoDepth - back] : history[history.length + undoDepth - back];
+        }
+
+        return keys;
+    }
+
+    public void makeMove(int move){
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = mailbox[from];
+        int captured = mailbox[to];
+
+        pushUndo(move, captured);
+
+        halfmoveClock = captured != EMPTY || pieceType(piece) == PAWN ? 0 : halfmoveClock + 1;
+        if(sideToMove == BLACK) fullmoveNumber++;
+
+        if(epSquare != NO_SQUARE) key ^= Zobrist.EN_PASSANT[file(epSquare)];
+
+        if(captured != EMPTY) remove(to);
+
+        movePiece(piece, from, to);
+
+        if(Move.isEnPassant(move)){
+            remove(sideToMove == WHITE ? to - 8 : to + 8);
+        }else if(Move.isPromotion(move)){
+            remove(to);
+            put(pieceCode(sideToMove, Move.promotion(move)), to);
+        }else if(Move.isCastle(move)){
+
+            if(to > from){
+                movePiece(mailbox[to + 1], to + 1, to - 1);
+            }else{
+                movePiece(mailbox[to - 2], to - 2, to + 1);
+            }
+        }
+
+        key ^= Zobrist.CASTLING[castlingRights];
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        key ^= Zobrist.CASTLING[castlingRights];
+
+        epSquare = Move.isDoublePush(move) ? (from + to) >>> 1 : NO_SQUARE;
+        if(epSquare != NO_SQUARE) key ^= Zobrist.EN_PASSANT[file(epSquare)];
+
+        sideToMove ^= 1;
+        key ^= Zobrist.SIDE;
+    }
+
+    public void unmakeMove(){
+
+        undoDepth--;
+
+        int move = undoMoves[undoDepth];
+        int state = undoStates[undoDepth];
+
+        sideToMove ^= 1;
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int captured = state & 15;
+
+        castlingRights = (state >>> 4) & 15;
+        epSquare = ((state >>> 8) & 127) - 1;
+        halfmoveClock = state >>> 15;
+        if(sideToMove == BLACK) fullmoveNumber--;
+
+        if(Move.isPromotion(move)){
+            remove(to);
+            put(pieceCode(sideToMove, PAWN), to);
+        }
+
+        movePiece(mailbox[to], to, from);
+
+        if(captured != EMPTY){
+            put(captured, to);
+        }else if(Move.isEnPassant(move)){
+            put(pieceCode(sideToMove ^ 1, PAWN), sideToMove == WHITE ? to - 8 : to + 8);
+        }else if(Move.isCastle(move)){
+
+            if(to > from){
+                movePiece(mailbox[to - 1], to - 1, to + 1);
+            }else{
+                movePiece(mailbox[to + 1], to + 1, to - 2);
+            }
+        }
+
+        key = undoKeys[undoDepth];
+    }
+
+    // Passes the turn without moving, for null-move pruning; undone by unmakeNullMove. The halfmove clock
+    // restarts, so no repetition is found across it.
+    public void makeNullMove(){
+
+        pushUndo(Move.NONE, EMPTY);
+
+        halfmoveClock = 0;
+        if(sideToMove == BLACK) fullmoveNumber++;
+
+        if(epSquare != NO_SQUARE){
+            key ^= Zobrist.EN_PASSANT[file(epSquare)];
+            epSquare = NO_SQUARE;
+        }
+
+        sideToMove ^= 1;
+        key ^= Zobrist.SIDE;
+    }
+
+    public void unmakeNullMove(){
+
+        undoDepth--;
+
+        sideToMove ^= 1;
+
+        int state = undoStates[undoDepth];
+
+        epSquare = ((state >>> 8) & 127) - 1;
+        halfmoveClock = state >>> 15;
+        if(sideToMove == BLACK) fullmoveNumber--;
+
+        key = undoKeys[undoDepth];
+    }
+
+    private void pushUndo(int move, int captured){
+
+        if(undoDepth == undoMoves.length){
+            undoMoves = Arrays.copyOf(undoMoves, undoDepth * 2);
+            undoStates = Arrays.copyOf(undoStates, undoDepth * 2);
+            undoKeys = Arrays.copyOf(undoKeys, undoDepth * 2);
+        }
+
+        undoMoves[undoDepth] = move;
+        undoStates[undoDepth] = captured | castlingRights << 4 | (epSquare + 1) << 8 | halfmoveClock << 15;
+        undoKeys[undoDepth] = key;
+        undoDepth++;
+    }
+
+    private void movePiece(int code, int from, int to){
+        long b = (1L << from) | (1L << to);
+        pieces[code] ^= b;
+        colors[code / 6] ^= b;
+        occupied ^= b;
+        mailbox[from] = EMPTY;
+        mailbox[to] = code;
+        key ^= Zobrist.PIECES[code][from] ^ Zobrist.PIECES[code][to];
+        mgScore += PieceSquareTables.MG[code][to] - PieceSquareTables.MG[code][from];
+        egScore += PieceSquareTables.EG[code][to] - PieceSquareTables.EG[code][from];
+    }
+}
@@ -3,10 +3,9 @@ package chessEngine.gameState;
 import chessEngine.ai.AdvancedAI;
 import chessEngine.ai.ChessAI;
 import chessEngine.ai.RandomAI;
-import com.sun.xml.internal.ws.api.model.CheckedException;
-import sun.nio.cs.ext.MacThai;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
@@ -30,78 +29,148 @@ public class ChessBoard {
     public final boolean isWhiteTurn;
     public final boolean[][] castlingInfo;
 
+    // Plies since the last capture or pawn move, and the move number, as in FEN
+    public final int halfmoveClock;
+    public final int fullmoveNumber;
+
+    private final long zobristKey;
+
+    // Keys of the earlier positions back to the last capture or pawn move, oldest first
+    private final long[] history;
+
+    // Built on first use; the board never changes, so neither does the map
+    private volatile AttackMap attackMap;
+
     public ChessBoard(ChessPiece[][] boardState, boolean[][] castlingInfo, boolean isWhiteTurn){
+        this(boardState, castlingInfo, isWhiteTurn, 0, 1, BitBoard.NO_HISTORY);
+    }
+
+    ChessBoard(ChessPiece[][] boardState, boolean[][] castlingInfo, boolean isWhiteTurn, int halfmoveClock, int fullmoveNumber, long[] history){
+        this(boardState, castlingInfo, isWhiteTurn, halfmoveClock, fullmoveNumber, history, Zobrist.compute(boardState, castlingInfo, isWhiteTurn));
+    }
+
+    private ChessBoard(ChessPiece[][] boardState, boolean[][] castlingInfo, boolean isWhiteTurn, int halfmoveClock, int fullmoveNumber, long[] history, long zobristKey){
         this.boardState = boardState;
         this.isWhiteTurn = isWhiteTurn;
         this.castlingInfo = castlingInfo;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        this.history = history;
+        this.zobristKey = zobristKey;
+    }
+
+    public static ChessBoard fromFen(String fen){
+        return Fen.parse(fen).toChessBoard();
+    }
+
+    public String toFen(){
+        return Fen.toFen(toBitBoard());
+    }
+
+    public long zobristKey(){
+        return zobristKey;
+    }
+
+    public BitBoard toBitBoard(){
+        return new BitBoard(this);
+    }
+
+    long[] history(){
+        return history.clone();
+    }
+
+    // Attackers, checkers, pins and x-rays of this position, shared by everything that asks
+    public AttackMap attackMap(){
+
+        AttackMap map = attackMap;
+
+        if(map == null){
+            map = new AttackMap(toBitBoard());
+            attackMap = map;
+        }
+
+        return map;
+    }
+
+    // Material the side to move wins or loses by the move and the exchange it starts on its target square;
+    // 0 for an illegal move
+    public int staticExchange(ChessMove move){
+
+        AttackMap map = attackMap();
+        int resolved = MoveGenerator.resolve(map.board(), move.toMove());
+
+        return resolved == Move.NONE ? 0 : map.staticExchange(resolved);
     }
 
     public boolean isValidMove(ChessMove move){
-        return isValidMove(move, true);
+        return MoveGenerator.resolve(toBitBoard(), move.toMove()) != Move.NONE;
     }
 
     public boolean isValidMove(ChessMove move, boolean checkColor){
+        return isValidMove(move.sx, move.sy, move.ex, move.ey, checkColor);
+    }
+
+    public boolean isValidMove(int sx, int sy, int ex, int ey, boolean checkColor){
+
+        if(checkColor) return MoveGenerator.resolve(toBitBoard(), Move.of(BitBoard.square(sx, sy), BitBoard.square(ex, ey))) != Move.NONE;
 
-        ChessPiece sourcePiece = boardState[move.sx][move.sy];
-        ChessPiece endPiece = boardState[move.ex][move.ey];
+        ChessPiece sourcePiece = boardState[sx][sy];
+        ChessPiece endPiece = boardState[ex][ey];
 
         //System.out.println("S:" + sourcePiece.name());
         //System.out.println("E:" + endPiece.name());
 
         if(sourcePiece == ChessPiece.none || (sourcePiece.isWhite != isWhiteTurn && checkColor) || (!(endPiece == ChessPiece.none || endPiece == ChessPiece.wEpPawn || endPiece == ChessPiece.bEpPawn) && endPiece.isWhite == sourcePiece.isWhite)) return false;
-        if(move.sx == move.ex && move.sy == move.ey) return false;
+        if(sx == ex && sy == ey) return false;
 
         //System.out.println("Move Passed Check 1");
 
         switch(sourcePiece){
             case wKing:
             case bKing:
-                if(!isValidKingMove(sourcePiece.isWhite, move.sx, move.sy, move.ex, move.ey)) return false;
+                if(!isValidKingMove(sourcePiece.isWhite, sx, sy, ex, ey)) return false;
                 break;
             case wRook:
             case bRook:
-                if(!isValidRookMove(move.sx, move.sy, move.ex, move.ey)) return false;
+                if(!isValidRookMove(sx, sy, ex, ey)) return false;
                 break;
             case wBish:
             case bBish:
-                if(!isValidBishopMove(move.sx, move.sy, move.ex, move.ey)) return false;
+                if(!isValidBishopMove(sx, sy, ex, ey)) return false;
                 break;
             case wQueen:
             case bQueen:
-                if(!isValidBishopMove(move.sx, move.sy, move.ex, move.ey) && !isValidRookMove(move.sx, move.sy, move.ex, move.ey)) return false;
+                if(!isValidBishopMove(sx, sy, ex, ey) && !isValidRookMove(sx, sy, ex, ey)) return false;
                 break;
             case wKnight:
             case bKnight:
-                if(!isValidKnightMove(move.sx, move.sy, move.ex, move.ey)) return false;
+                if(!isValidKnightMove(sx, sy, ex, ey)) return false;
                 break;
             case wEpPawn:
             case bEpPawn:
                 return false;
             case wPawn:
             case bPawn:
-                if(!isValidPawnMove(sourcePiece.isWhite, endPiece, move.sx, move.sy, move.ex, move.ey)) return false;
+                if(!isValidPawnMove(sourcePiece.isWhite, endPiece, sx, sy, ex, ey)) return false;
                 break;
         }
 
         //System.out.println("Move Passed Check 2");
 
-        return !applyMoveUnsafe(move).isInCheck(sourcePiece.isWhite);
+        return !applyMoveUnsafe(sx, sy, ex, ey, 0).isInCheck(sourcePiece.isWhite);
     }
 
     public ChessMove[] getValidMoves(){
 
-        List<ChessMove> validMoves = new ArrayList<ChessMove>();
+        BitBoard bitBoard = toBitBoard();
 
-        for(int x = 0; x < 8; x++){
-            for(int y = 0; y < 8; y++){
-                if(boardState[x][y] == ChessPiece.none) continue;
-                for(int i = 0; i < 8; i++){
-                    for(int j = 0; j < 8; j++){
-                        ChessMove move = new ChessMove(x, y, i, j);
-                        if(isValidMove(move)) validMoves.add(move);
-                    }
-                }
-            }
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(bitBoard, moves, 0);
+
+        List<ChessMove> validMoves = new ArrayList<ChessMove>(count);
+
+        for(int i = 0; i < count; i++){
+            validMoves.add(new ChessMove(moves[i]));
         }
 
         return validMoves.toArray(new ChessMove[validMoves.size()]);
@@ -111,17 +180,17 @@ public class ChessBoard {
 
         if(isWhite && sy == ey && sx == 4 && sy == 0){
             if(ex == 2 && castlingInfo[0][0]){
-                return !isInCheck(true) && isValidMove(new ChessMove(4, 0, 3, 0));
+                return !isInCheck(true) && isValidMove(4, 0, 3, 0, true);
             }else if (ex == 6 && castlingInfo[0][1]){
-                return !isInCheck(true) && isValidMove(new ChessMove(4, 0, 5, 0));
+                return !isInCheck(true) && isValidMove(4, 0, 5, 0, true);
             }
         }
 
         if(!isWhite && sy == ey && sx == 4 && sy == 7 && Math.abs(sx-ex) == 2){
             if(ex == 2 && castlingInfo[1][0]){
-                return !isInCheck(false) && isValidMove(new ChessMove(4, 7, 3, 7));
+                return !isInCheck(false) && isValidMove(4, 7, 3, 7, true);
             }else if (ex == 6 && castlingInfo[1][1]){
-                return !isInCheck(false) && isValidMove(new ChessMove(4, 7, 5, 7));
+                return !isInCheck(false) && isValidMove(4, 7, 5, 7, true);
             }
         }
 
@@ -189,6 +258,10 @@ public class ChessBoard {
     }
 
     private ChessBoard applyMoveUnsafe(ChessMove move){
+        return applyMoveUnsafe(move.sx, move.sy, move.ex, move.ey, move.promotion);
+    }
+
+    private ChessBoard applyMoveUnsafe(int sx, int sy, int ex, int ey, int promotion){
 
         ChessPiece[][] newBoard = new ChessPiece[8][8];
 
@@ -200,166 +273,191 @@ public class ChessBoard {
             }
         }
 
-        newBoard[move.ex][move.ey] = newBoard[move.sx][move.sy];
-        newBoard[move.sx][move.sy] = ChessPiece.none;
+        long key = zobristKey ^ Zobrist.SIDE;
+
+        key = place(newBoard, ex, ey, newBoard[sx][sy], key);
+        key = place(newBoard, sx, sy, ChessPiece.none, key);
 
-        if(newBoard[move.ex][move.ey] == ChessPiece.wPawn && move.ey == 7){
-            newBoard[move.ex][move.ey] = ChessPiece.wQueen;
+        if(newBoard[ex][ey] == ChessPiece.wPawn && ey == 7){
+            key = place(newBoard, ex, ey, BitBoard.chessPiece(BitBoard.pieceCode(BitBoard.WHITE, promotion == 0 ? BitBoard.QUEEN : promotion)), key);
         }
 
         /** Castling Info BEGIN **/
 
-        if(newBoard[move.ex][move.ey] == ChessPiece.wKing){
+        if(newBoard[ex][ey] == ChessPiece.wKing){
             newCastlingInfo[0][0] = false;
             newCastlingInfo[0][1] = false;
         }
 
-        if(newBoard[move.ex][move.ey] == ChessPiece.bKing){
+        if(newBoard[ex][ey] == ChessPiece.bKing){
             newCastlingInfo[1][0] = false;
             newCastlingInfo[1][1] = false;
         }
 
-        if(newBoard[move.ex][move.ey] == ChessPiece.wRook){
-            if(move.sx == 0){
+        if(newBoard[ex][ey] == ChessPiece.wRook){
+            if(sx == 0){
                 newCastlingInfo[0][0] = false;
-            }else if(move.sx == 7){
+            }else if(sx == 7){
                 newCastlingInfo[0][1] = false;
             }
         }
 
-        if(newBoard[move.ex][move.ey] == ChessPiece.bRook){
-            if(move.sx == 0){
+        if(newBoard[ex][ey] == ChessPiece.bRook){
+            if(sx == 0){
                 newCastlingInfo[1][0] = false;
-            }else if(move.sx == 7){
+            }else if(sx == 7){
                 newCastlingInfo[1][1] = false;
             }
         }
 
-        if(!isWhiteTurn && move.ey == 0){
-            if(move.ex == 0){
-                newCastlingInfo[0][0] = false;
-            }else if(move.ex == 7){
+        if(!isWhiteTurn && ey == 0){
+            if(ex == 0){
                 newCastlingInfo[0][0] = false;
+            }else if(ex == 7){
+                newCastlingInfo[0][1] = false;
             }
         }
 
-        if(isWhiteTurn && move.ey == 7){
-            if(move.ex == 0){
-                newCastlingInfo[1][0] = false;
-            }else if(move.ex == 7){
+        if(isWhiteTurn && ey == 7){
+            if(ex == 0){
                 newCastlingInfo[1][0] = false;
+            }else if(ex == 7){
+                newCastlingInfo[1][1] = false;
             }
         }
 
         /** Castling Info END **/
 
-        if(newBoard[move.ex][move.ey] == ChessPiece.wKing && move.sx == 4 && move.sy == 0){
+        if(newBoard[ex][ey] == ChessPiece.wKing && sx == 4 && sy == 0){
 
-            if(move.ex == 2){
-                newBoard[0][0] = ChessPiece.none;
-                newBoard[3][0] = ChessPiece.wRook;
-            }else if(move.ex == 6){
-                newBoard[7][0] = ChessPiece.none;
-                newBoard[5][0] = ChessPiece.wRook;
+            if(ex == 2){
+                key = place(newBoard, 0, 0, ChessPiece.none, key);
+                key = place(newBoard, 3, 0, ChessPiece.wRook, key);
+            }else if(ex == 6){
+                key = place(newBoard, 7, 0, ChessPiece.none, key);
+                key = place(newBoard, 5, 0, ChessPiece.wRook, key);
             }
         }
 
-        if(newBoard[move.ex][move.ey] == ChessPiece.bKing && move.sx == 4 && move.sy == 7){
+        if(newBoard[ex][ey] == ChessPiece.bKing && sx == 4 && sy == 7){
 
-            if(move.ex == 2){
-                newBoard[0][7] = ChessPiece.none;
-                newBoard[3][7] = ChessPiece.bRook;
-            }else if(move.ex == 6){
-                newBoard[7][7] = ChessPiece.none;
-                newBoard[5][7] = ChessPiece.bRook;
+            if(ex == 2){
+                key = place(newBoard, 0, 7, ChessPiece.none, key);
+                key = place(newBoard, 3, 7, ChessPiece.bRook, key);
+            }else if(ex == 6){
+                key = place(newBoard, 7, 7, ChessPiece.none, key);
+                key = place(newBoard, 5, 7, ChessPiece.bRook, key);
             }
         }
 
-        if(newBoard[move.ex][move.ey] == ChessPiece.bPawn && move.ey == 0){
-            newBoard[move.ex][move.ey] = ChessPiece.bQueen;
+        if(newBoard[ex][ey] == ChessPiece.bPawn && ey == 0){
+            key = place(newBoard, ex, ey, BitBoard.chessPiece(BitBoard.pieceCode(BitBoard.BLACK, promotion == 0 ? BitBoard.QUEEN : promotion)), key);
         }
 
         for(int x = 0; x < 8; x++){
             for(int y = 0; y < 8; y++){
                 if(newBoard[x][y] == ChessPiece.wEpPawn || newBoard[x][y] == ChessPiece.bEpPawn){
-                    newBoard[x][y] = ChessPiece.none;
+                    key = place(newBoard, x, y, ChessPiece.none, key);
                 }
             }
         }
 
-        if(Math.abs(move.sy - move.ey) == 2 && move.sx == move.ex){
+        if(Math.abs(sy - ey) == 2 && sx == ex){
 
-            if(boardState[move.sx][move.sy] == ChessPiece.wPawn){
-                newBoard[move.sx][move.sy + 1] = ChessPiece.wEpPawn;
-            }else if(boardState[move.sx][move.sy] == ChessPiece.bPawn){
-                newBoard[move.sx][move.sy - 1] = ChessPiece.bEpPawn;
+            if(boardState[sx][sy] == ChessPiece.wPawn){
+                key = place(newBoard, sx, sy + 1, ChessPiece.wEpPawn, key);
+            }else if(boardState[sx][sy] == ChessPiece.bPawn){
+                key = place(newBoard, sx, sy - 1, ChessPiece.bEpPawn, key);
             }
         }
 
-        if((boardState[move.sx][move.sy] == ChessPiece.wPawn || boardState[move.sx][move.sy] == ChessPiece.bPawn)){
+        if((boardState[sx][sy] == ChessPiece.wPawn || boardState[sx][sy] == ChessPiece.bPawn)){
 
-            if(boardState[move.ex][move.ey] == ChessPiece.wEpPawn){
-                newBoard[move.ex][move.ey + 1] = ChessPiece.none;
-            }else if(boardState[move.ex][move.ey] == ChessPiece.bEpPawn){
-                newBoard[move.ex][move.ey - 1] = ChessPiece.none;
+            if(boardState[ex][ey] == ChessPiece.wEpPawn){
+                key = place(newBoard, ex, ey + 1, ChessPiece.none, key);
+            }else if(boardState[ex][ey] == ChessPiece.bEpPawn){
+                key = place(newBoard, ex, ey - 1, ChessPiece.none, key);
             }
         }
 
-        return new ChessBoard(newBoard, newCastlingInfo, !isWhiteTurn);
+        key ^= Zobrist.CASTLING[Zobrist.castlingIndex(castlingInfo)] ^ Zobrist.CASTLING[Zobrist.castlingIndex(newCastlingInfo)];
+
+        ChessPiece moved = boardState[sx][sy];
+        ChessPiece taken = boardState[ex][ey];
+
+        boolean reversible = moved != ChessPiece.wPawn && moved != ChessPiece.bPawn
+                && (taken == ChessPiece.none || taken == ChessPiece.wEpPawn || taken == ChessPiece.bEpPawn);
+
+        long[] newHistory = BitBoard.NO_HISTORY;
+
+        if(reversible){
+            newHistory = Arrays.copyOf(history, history.length + 1);
+            newHistory[history.length] = zobristKey;
+        }
+
+        return new ChessBoard(newBoard, newCastlingInfo, !isWhiteTurn, reversible ? halfmoveClock + 1 : 0,
+                isWhiteTurn ? fullmoveNumber : fullmoveNumber + 1, newHistory, key);
+    }
+
+    private static long place(ChessPiece[][] board, int x, int y, ChessPiece piece, long key){
+        key ^= Zobrist.squareKey(board[x][y], x, y) ^ Zobrist.squareKey(piece, x, y);
+        board[x][y] = piece;
+        return key;
     }
 
     public boolean isInCheck(boolean white){
+        return attackMap().isInCheck(white ? BitBoard.WHITE : BitBoard.BLACK);
+    }
 
-        int kx = -1, ky = -1;
+    public boolean isCheckMate(){
 
-        for(int x = 0, y = 0; y < 8; x += x == 7 ? -7 : 1, y += x == 0 ? 1 : 0){
-            if(boardState[x][y].isWhite == white && (boardState[x][y] == ChessPiece.wKing || boardState[x][y] == ChessPiece.bKing)){
-                kx = x;
-                ky = y;
-                break;
-            }
-        }
+        return isInCheck(isWhiteTurn) && getValidMoves().length == 0;
+    }
 
-        if(kx == -1 && ky == -1) return false; // Could not find king...
+    public boolean isStalemate(){
+        return !isInCheck(isWhiteTurn) && getValidMoves().length == 0;
+    }
 
-        for(int x = 0, y = 0; y < 8; x += x == 7 ? -7 : 1, y += x == 0 ? 1 : 0){
+    // Third occurrence of the position with the same side to move
+    public boolean isThreefoldRepetition(){
 
-            if(boardState[x][y].isWhite == white || boardState[x][y] == ChessPiece.none) continue;
+        int occurrences = 1;
 
-            switch(boardState[x][y]){
-                case wKing:
-                case bKing:
-                    if(isValidKingMove(boardState[x][y].isWhite, x, y, kx, ky)) return true;
-                    break;
-                case wRook:
-                case bRook:
-                    if(isValidRookMove(x, y, kx, ky)) return true;
-                    break;
-                case wBish:
-                case bBish:
-                    if(isValidBishopMove(x, y, kx, ky)) return true;
-                    break;
-                case wQueen:
-                case bQueen:
-                    if(isValidBishopMove(x, y, kx, ky) || isValidRookMove(x, y, kx, ky)) return true;
-                    break;
-                case wKnight:
-                case bKnight:
-                    if(isValidKnightMove(x, y, kx, ky)) return true;
-                    break;
-                case wPawn:
-                case bPawn:
-                    if(isValidPawnMove(boardState[x][y].isWhite, boardState[kx][ky], x, y, kx, ky)) return true;
-                    break;
-            }
+        for(int i = history.length - 4; i >= 0; i -= 2){
+            if(history[i] == zobristKey) occurrences++;
         }
 
-        return false;
+        return occurrences >= 3;
     }
 
-    public boolean isCheckMate(){
+    // A checkmate on the hundredth ply still counts as a checkmate
+    public boolean isFiftyMoveDraw(){
+        return halfmoveClock >= 100 && !isCheckMate();
+    }
 
-        return isInCheck(isWhiteTurn) && getValidMoves().length == 0;
+    public boolean isInsufficientMaterial(){
+        return toBitBoard().isInsufficientMaterial();
+    }
+
+    public boolean isDraw(){
+        return isStalemate() || isThreefoldRepetition() || isFiftyMoveDraw() || isInsufficientMaterial();
+    }
+
+    @Override
+    public int hashCode(){
+        return (int)(zobristKey ^ (zobristKey >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object o){
+
+        if(this == o) return true;
+        if(!(o instanceof ChessBoard)) return false;
+
+        ChessBoard other = (ChessBoard) o;
+
+        return zobristKey == other.zobristKey && isWhiteTurn == other.isWhiteTurn
+                && Arrays.deepEquals(boardState, other.boardState) && Arrays.deepEquals(castlingInfo, other.castlingInfo);
     }
 
     private static final String SGR_CODE_PRE = (char)0x1b + "[";
@@ -409,7 +507,8 @@ public class ChessBoard {
         ChessBoard board = START_POSITION;
         Scanner scanner = new Scanner(System.in);
 
-        ChessAI ai = new AdvancedAI(4);
+        AdvancedAI ai = new AdvancedAI(4);
+        ai.setListener(System.out::println);
 
         while(true){
 
@@ -442,6 +541,11 @@ public class ChessBoard {
                 System.exit(0);
             }
 
+            if(board.isDraw()){
+                System.out.println("Draw.");
+                System.exit(0);
+            }
+
             ChessMove aiMove = ai.getAIMove(board);
 
             System.out.println("AI response: " + aiMove.toString() + "\n");
@@ -453,6 +557,11 @@ public class ChessBoard {
                 System.out.println("Black Wins.");
                 System.exit(0);
             }
+
+            if(board.isDraw()){
+                System.out.println("Draw.");
+                System.exit(0);
+            }
         }
 
         // 2P
@@ -1,8 +1,5 @@
 package chessEngine.gameState;
 
-import java.text.ParseException;
-import java.util.regex.Pattern;
-
 public class ChessMove {
 
     public final int sx;
@@ -10,37 +7,36 @@ public class ChessMove {
     public final int ex;
     public final int ey;
 
+    // Piece type to promote to (see BitBoard), or 0 to let the board pick a queen
+    public final int promotion;
+
     public ChessMove(int sx, int sy, int ex, int ey) {
+        this(sx, sy, ex, ey, 0);
+    }
+
+    public ChessMove(int sx, int sy, int ex, int ey, int promotion) {
         this.sx = sx;
         this.sy = sy;
         this.ex = ex;
         this.ey = ey;
+        this.promotion = promotion;
     }
 
-    private static final String fileNames = "abcdefgh";
-    private static final String rankNames = "12345678";
-    private static final String regex = "[" + fileNames + "][" + rankNames + "]-[" + fileNames + "][" + rankNames + "]";
-
-    public static ChessMove parse(String str){
-
-        //System.out.println("\n\n\"" + str + "\"\n\n");
-
-        Pattern p = Pattern.compile(regex);
-
-        if(!p.matcher(str).matches()){
-            throw new IllegalArgumentException("Could not parse to ChessMove: " + str);
-        }
+    public ChessMove(int move) {
+        this(BitBoard.file(Move.from(move)), BitBoard.rank(Move.from(move)), BitBoard.file(Move.to(move)), BitBoard.rank(Move.to(move)), Move.promotion(move));
+    }
 
-        int sx = fileNames.indexOf((int)str.charAt(0));
-        int sy = rankNames.indexOf((int)str.charAt(1));
-        int ex = fileNames.indexOf((int)str.charAt(3));
-        int ey = rankNames.indexOf((int)str.charAt(4));
+    // Packed form without flags; MoveGenerator.resolve fills those in against a position
+    public int toMove(){
+        return Move.of(BitBoard.square(sx, sy), BitBoard.square(ex, ey), promotion);
+    }
 
-        return new ChessMove(sx, sy, ex, ey);
+    public static ChessMove parse(String str){
+        return new ChessMove(Move.parse(str));
     }
 
     public String toString(){
-        return fileNames.charAt(sx) + (rankNames.charAt(sy) + "-" + fileNames.charAt(ex)) + rankNames.charAt(ey);
+        return Move.toString(toMove());
     }
 
     public static void main(String[] args){
@@ -0,0 +1,70 @@
+package chessEngine.gameState;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+// Streams an EPD file through a callback one record at a time. The line buffer and the record handed to
+// the callback are reused for every line, so memory use does not grow with the file and no per-line
+// objects are created. Blank lines and lines starting with '#' are skipped.
+public final class EpdReader {
+
+    private EpdReader(){}
+
+    public static long read(Path path, Consumer<EpdRecord> handler) throws IOException {
+        try(Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)){
+            return read(in, handler);
+        }
+    }
+
+    // Returns the number of records passed to the handler
+    public static long read(Reader in, Consumer<EpdRecord> handler) throws IOException {
+
+        char[] buffer = new char[1 << 16];
+        StringBuilder line = new StringBuilder(256);
+        EpdRecord record = new EpdRecord();
+
+        long lineNumber = 0;
+        long records = 0;
+        int read;
+
+        while((read = in.read(buffer)) != -1){
+            for(int i = 0; i < read; i++){
+
+                char c = buffer[i];
+
+                if(c == '\n'){
+                    lineNumber++;
+                    if(process(line, record, handler, lineNumber)) records++;
+                    line.setLength(0);
+                }else if(c != '\r'){
+                    line.append(c);
+                }
+            }
+        }
+
+        if(line.length() > 0 && process(line, record, handler, lineNumber + 1)) records++;
+
+        return records;
+    }
+
+    private static boolean process(StringBuilder line, EpdRecord record, Consumer<EpdRecord> handler, long lineNumber){
+
+        int start = Fen.skipSpaces(line, 0, line.length());
+
+        if(start == line.length() || line.charAt(start) == '#') return false;
+
+        try{
+            record.parse(line, start, line.length());
+        }catch(IllegalArgumentException e){
+            throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+        }
+
+        handler.accept(record);
+
+        return true;
+    }
+}
@@ -0,0 +1,171 @@
+package chessEngine.gameState;
+
+import java.util.Arrays;
+
+// One line of Extended Position Description: the four FEN position fields followed by operations of the
+// form "opcode operand...;". A record is meant to be reused: parse() overwrites the board and keeps only
+// offsets into the line, so reading needs no allocation. Copy the board or the operands to keep them.
+// EPD has no clock fields; the standard hmvc and fmvn operations set the board's halfmove clock and
+// fullmove number instead, which otherwise start at 0 and 1.
+public class EpdRecord {
+
+    private final BitBoard board = new BitBoard();
+
+    private CharSequence line = "";
+
+    // Four offsets per operation: opcode start and end, operand start and end
+    private int[] ranges = new int[64];
+    private int operationCount;
+
+    public static EpdRecord of(CharSequence line){
+        EpdRecord record = new EpdRecord();
+        record.parse(line);
+        return record;
+    }
+
+    public void parse(CharSequence line){
+        parse(line, 0, line.length());
+    }
+
+    public void parse(CharSequence text, int start, int end){
+
+        line = text;
+        operationCount = 0;
+
+        int i = Fen.parsePosition(text, start, end, board);
+
+        while(true){
+
+            i = Fen.skipSpaces(text, i, end);
+            if(i == end) break;
+
+            int opcodeStart = i;
+
+            while(i < end && text.charAt(i) != ';' && !Character.isWhitespace(text.charAt(i))) i++;
+
+            int opcodeEnd = i;
+
+            i = Fen.skipSpaces(text, i, end);
+
+            int operandStart = i;
+            boolean quoted = false;
+
+            // Quoted operands may contain spaces and semicolons
+            for(; i < end; i++){
+                char c = text.charAt(i);
+                if(c == '"') quoted = !quoted;
+                else if(c == ';' && !quoted) break;
+            }
+
+            if(i == end) throw new IllegalArgumentException("Missing ';' in EPD: " + text.subSequence(start, end));
+
+            int operandEnd = i;
+            while(operandEnd > operandStart && Character.isWhitespace(text.charAt(operandEnd - 1))) operandEnd--;
+
+            i++;
+
+            if(operationCount * 4 == ranges.length) ranges = Arrays.copyOf(ranges, ranges.length * 2);
+
+            int r = operationCount++ * 4;
+            ranges[r] = opcodeStart;
+            ranges[r + 1] = opcodeEnd;
+            ranges[r + 2] = operandStart;
+            ranges[r + 3] = operandEnd;
+        }
+
+        int op = find("hmvc");
+        if(op >= 0) board.halfmoveClock = counter(op);
+
+        op = find("fmvn");
+        if(op >= 0) board.fullmoveNumber = Math.max(1, counter(op));
+    }
+
+    // A clock operand, read in place
+    private int counter(int op){
+
+        int start = ranges[op * 4 + 2];
+        int end = ranges[op * 4 + 3];
+        int value = 0;
+
+        if(start == end) throw new IllegalArgumentException("Missing count in EPD: " + line);
+
+        for(int i = start; i < end; i++){
+
+            char c = line.charAt(i);
+
+            if(c < '0' || c > '9' || value > 9999) throw new IllegalArgumentException("Bad count in EPD: " + line);
+
+            value = value * 10 + c - '0';
+        }
+
+        return value;
+    }
+
+    public BitBoard board(){
+        return board;
+    }
+
+    public CharSequence line(){
+        return line;
+    }
+
+    public int operationCount(){
+        return operationCount;
+    }
+
+    // Index of the first operation with this opcode, or -1
+    public int find(CharSequence opcode){
+
+        for(int op = 0; op < operationCount; op++){
+
+            int start = ranges[op * 4];
+            int length = ranges[op * 4 + 1] - start;
+
+            if(length != opcode.length()) continue;
+
+            int i = 0;
+            while(i < length && line.charAt(start + i) == opcode.charAt(i)) i++;
+
+            if(i == length) return op;
+        }
+
+        return -1;
+    }
+
+    public boolean has(CharSequence opcode){
+        return find(opcode) >= 0;
+    }
+
+    public String opcode(int op){
+        return line.subSequence(ranges[op * 4], ranges[op * 4 + 1]).toString();
+    }
+
+    // Operand text without the surrounding quotes of a single quoted string
+    public String operand(int op){
+
+        int start = ranges[op * 4 + 2];
+        int end = ranges[op * 4 + 3];
+
+        if(end - start >= 2 && line.charAt(start) == '"' && line.charAt(end - 1) == '"'){
+            start++;
+            end--;
+        }
+
+        return line.subSequence(start, end).toString();
+    }
+
+    // Operand of the first operation with this opcode, or null if there is none
+    public String operand(CharSequence opcode){
+        int op = find(opcode);
+        return op < 0 ? null : operand(op);
+    }
+
+    // Raw operand range within line(), for reading operands without allocating
+    public int operandStart(int op){
+        return ranges[op * 4 + 2];
+    }
+
+    public int operandEnd(int op){
+        return ranges[op * 4 + 3];
+    }
+}
@@ -0,0 +1,204 @@
+package chessEngine.gameState;
+
+import static chessEngine.gameState.BitBoard.*;
+
+// Forsyth-Edwards notation. Parsing works on any CharSequence range and writes into a caller-supplied
+// board, so lines can be read straight from a reused buffer without creating strings.
+// The move counters are optional on input and default to "0 1".
+public final class Fen {
+
+    private static final String PIECE_NAMES = "PNBRQKpnbrqk";
+
+    private Fen(){}
+
+    public static BitBoard parse(CharSequence fen){
+
+        BitBoard board = new BitBoard();
+        int end = fen.length();
+
+        int i = parsePosition(fen, 0, end, board);
+
+        // Optional halfmove clock and fullmove number
+        for(int field = 0; field < 2; field++){
+
+            i = skipSpaces(fen, i, end);
+            if(i == end) break;
+
+            int start = i;
+            int value = 0;
+
+            while(i < end && fen.charAt(i) >= '0' && fen.charAt(i) <= '9'){
+                value = value * 10 + fen.charAt(i++) - '0';
+                if(value > 9999) throw error(fen, 0, end);
+            }
+
+            if(i == start) throw error(fen, 0, end);
+
+            if(field == 0){
+                board.halfmoveClock = value;
+            }else{
+                board.fullmoveNumber = Math.max(1, value);
+            }
+        }
+
+        if(skipSpaces(fen, i, end) != end) throw error(fen, 0, end);
+
+        return board;
+    }
+
+    // Parses the four position fields (placement, side, castling, en passant) of text[start, end) into board
+    // and returns the index just past them. EPD lines continue with operations from there.
+    public static int parsePosition(CharSequence text, int start, int end, BitBoard board){
+
+        board.clear();
+
+        int i = skipSpaces(text, start, end);
+
+        int x = 0;
+        int y = 7;
+
+        for(; i < end && text.charAt(i) != ' '; i++){
+
+            char c = text.charAt(i);
+
+            if(c == '/'){
+
+                if(x != 8) throw error(text, start, end);
+                x = 0;
+                y--;
+
+            }else if(c >= '1' && c <= '8'){
+                x += c - '0';
+            }else{
+
+                int code = PIECE_NAMES.indexOf(c);
+
+                if(code < 0 || x > 7 || y < 0) throw error(text, start, end);
+
+                board.put(code, square(x, y));
+                x++;
+            }
+
+            if(x > 8) throw error(text, start, end);
+        }
+
+        if(y != 0 || x != 8) throw error(text, start, end);
+
+        i = skipSpaces(text, i, end);
+
+        if(i == end) throw error(text, start, end);
+
+        char side = text.charAt(i++);
+
+        if(side == 'w'){
+            board.sideToMove = WHITE;
+        }else if(side == 'b'){
+            board.sideToMove = BLACK;
+        }else{
+            throw error(text, start, end);
+        }
+
+        i = skipSpaces(text, i, end);
+
+        if(i < end && text.charAt(i) == '-'){
+            i++;
+        }else{
+
+            for(; i < end && text.charAt(i) != ' '; i++){
+                switch(text.charAt(i)){
+                    case 'K': board.castlingRights |= WHITE_KINGSIDE; break;
+                    case 'Q': board.castlingRights |= WHITE_QUEENSIDE; break;
+                    case 'k': board.castlingRights |= BLACK_KINGSIDE; break;
+                    case 'q': board.castlingRights |= BLACK_QUEENSIDE; break;
+                    default: throw error(text, start, end);
+                }
+            }
+        }
+
+        i = skipSpaces(text, i, end);
+
+        if(i < end && text.charAt(i) == '-'){
+            i++;
+        }else if(i + 1 < end){
+
+            int file = text.charAt(i) - 'a';
+            int rank = text.charAt(i + 1) - '1';
+
+            if(file < 0 || file > 7 || (rank != 2 && rank != 5)) throw error(text, start, end);
+
+            board.epSquare = square(file, rank);
+            i += 2;
+        }else{
+            throw error(text, start, end);
+        }
+
+        board.key = Zobrist.compute(board);
+
+        return i;
+    }
+
+    public static String toFen(BitBoard board){
+
+        StringBuilder sb = new StringBuilder(90);
+
+        appendPosition(board, sb);
+        sb.append(' ').append(board.halfmoveClock).append(' ').append(board.fullmoveNumber);
+
+        return sb.toString();
+    }
+
+    // The four position fields, as used by both FEN and EPD
+    public static void appendPosition(BitBoard board, StringBuilder sb){
+
+        for(int y = 7; y >= 0; y--){
+
+            int empty = 0;
+
+            for(int x = 0; x < 8; x++){
+
+                int code = board.mailbox[square(x, y)];
+
+                if(code == EMPTY){
+                    empty++;
+                    continue;
+                }
+
+                if(empty > 0) sb.append(empty);
+                empty = 0;
+
+                sb.append(PIECE_NAMES.charAt(code));
+            }
+
+            if(empty > 0) sb.append(empty);
+            if(y > 0) sb.append('/');
+        }
+
+        sb.append(board.sideToMove == WHITE ? " w " : " b ");
+
+        if(board.castlingRights == 0){
+            sb.append('-');
+        }else{
+            if((board.castlingRights & WHITE_KINGSIDE) != 0) sb.append('K');
+            if((board.castlingRights & WHITE_QUEENSIDE) != 0) sb.append('Q');
+            if((board.castlingRights & BLACK_KINGSIDE) != 0) sb.append('k');
+            if((board.castlingRights & BLACK_QUEENSIDE) != 0) sb.append('q');
+        }
+
+        sb.append(' ');
+
+        if(board.epSquare == NO_SQUARE){
+            sb.append('-');
+        }else{
+            sb.append((char) ('a' + file(board.epSquare))).append((char) ('1' + rank(board.epSquare)));
+        }
+    }
+
+    static int skipSpaces(CharSequence text, int i, int end){
+        while(i < end && Character.isWhitespace(text.charAt(i))) i++;
+        return i;
+    }
+
+    private static IllegalArgumentException error(CharSequence text, int start, int end){
+        return new IllegalArgumentException("Could not parse FEN: " + text.subSequence(start, end));
+    }
+}
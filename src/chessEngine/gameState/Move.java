@@ -0,0 +1,115 @@
+package chessEngine.gameState;
+
+// Moves packed into an int: bits 0-5 from, 6-11 to, 12-14 promotion piece type, 15-18 flags
+public final class Move {
+
+    public static final int NONE = 0;
+
+    public static final int CAPTURE = 1 << 15;
+    public static final int CASTLE = 1 << 16;
+    public static final int EN_PASSANT = 1 << 17;
+    public static final int DOUBLE_PUSH = 1 << 18;
+
+    // From, to and promotion: everything needed to tell two moves in one position apart
+    private static final int IDENTITY_MASK = (1 << 15) - 1;
+
+    private static final String fileNames = "abcdefgh";
+    private static final String rankNames = "12345678";
+    private static final String promotionNames = " nbrq";
+
+    private Move(){}
+
+    public static int of(int from, int to){
+        return from | to << 6;
+    }
+
+    public static int of(int from, int to, int promotion){
+        return from | to << 6 | promotion << 12;
+    }
+
+    public static int from(int move){
+        return move & 63;
+    }
+
+    public static int to(int move){
+        return (move >>> 6) & 63;
+    }
+
+    // Piece type the pawn promotes to, or 0 for a normal move
+    public static int promotion(int move){
+        return (move >>> 12) & 7;
+    }
+
+    public static boolean isCapture(int move){
+        return (move & CAPTURE) != 0;
+    }
+
+    public static boolean isCastle(int move){
+        return (move & CASTLE) != 0;
+    }
+
+    public static boolean isEnPassant(int move){
+        return (move & EN_PASSANT) != 0;
+    }
+
+    public static boolean isDoublePush(int move){
+        return (move & DOUBLE_PUSH) != 0;
+    }
+
+    public static boolean isPromotion(int move){
+        return (move & (7 << 12)) != 0;
+    }
+
+    public static boolean sameMove(int a, int b){
+        return (a & IDENTITY_MASK) == (b & IDENTITY_MASK);
+    }
+
+    public static String toString(int move){
+
+        StringBuilder sb = new StringBuilder(6);
+
+        sb.append(fileNames.charAt(BitBoard.file(from(move))));
+        sb.append(rankNames.charAt(BitBoard.rank(from(move))));
+        sb.append('-');
+        sb.append(fileNames.charAt(BitBoard.file(to(move))));
+        sb.append(rankNames.charAt(BitBoard.rank(to(move))));
+
+        if(promotion(move) != 0){
+            sb.append(promotionNames.charAt(promotion(move)));
+        }
+
+        return sb.toString();
+    }
+
+    // Accepts "e2-e4" or "e2e4" with an optional promotion letter; flags are left unset
+    public static int parse(String str){
+        return parse(str, 0, str.length());
+    }
+
+    // Parses the move in text[start, end) without allocating, so move lists can be read straight from a buffer
+    public static int parse(CharSequence text, int start, int end){
+
+        int i = start;
+
+        int sx = end > i ? fileNames.indexOf(text.charAt(i++)) : -1;
+        int sy = end > i ? rankNames.indexOf(text.charAt(i++)) : -1;
+
+        if(end > i && text.charAt(i) == '-') i++;
+
+        int ex = end > i ? fileNames.indexOf(text.charAt(i++)) : -1;
+        int ey = end > i ? rankNames.indexOf(text.charAt(i++)) : -1;
+
+        int promotion = 0;
+
+        if(end > i){
+            promotion = promotionNames.indexOf(Character.toLowerCase(text.charAt(i++)));
+            if(promotion == 0) promotion = -1;
+        }
+
+        if(sx < 0 || sy < 0 || ex < 0 || ey < 0 || promotion < 0 || end != i){
+            throw new IllegalArgumentException("Could not parse to move: " + text.subSequence(start, end));
+        }
+
+        return of(BitBoard.square(sx, sy), BitBoard.square(ex, ey), promotion);
+    }
+}
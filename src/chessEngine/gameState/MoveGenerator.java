@@ -0,0 +1,296 @@
+package chessEngine.gameState;
+
+import static chessEngine.gameState.BitBoard.*;
+
+public final class MoveGenerator {
+
+    public static final int MAX_MOVES = 256;
+
+    public static final int ALL = 0;
+    // Captures, en passant and every promotion: the moves quiescence search and capture ordering care about
+    public static final int CAPTURES = 1;
+    // Everything else, castling included
+    public static final int QUIETS = 2;
+
+    private MoveGenerator(){}
+
+    // Writes all legal moves for the side to move into moves[offset...] and returns how many were written
+    public static int generate(BitBoard board, int[] moves, int offset){
+        return generate(board, moves, offset, ALL, ~0L);
+    }
+
+    public static int generate(BitBoard board, int[] moves, int offset, int type){
+        return generate(board, moves, offset, type, ~0L);
+    }
+
+    // Checks a move from a table or killer slot against this position, generating only for its from-square
+    public static boolean isLegal(BitBoard board, int move, int[] buffer){
+
+        if(move == Move.NONE) return false;
+
+        int count = generate(board, buffer, 0, ALL, 1L << Move.from(move));
+
+        for(int i = 0; i < count; i++){
+            if(buffer[i] == move) return true;
+        }
+
+        return false;
+    }
+
+    private static int generate(BitBoard board, int[] moves, int offset, int type, long fromMask){
+
+        int us = board.sideToMove;
+        int them = us ^ 1;
+
+        long own = board.colors[us];
+        long enemy = board.colors[them];
+        long occupied = board.occupied;
+
+        int king = board.kingSquare(us);
+
+        int n = offset;
+
+        long checkMask = ~0L;
+        long pinned = 0L;
+        long checkers = 0L;
+
+        long typeMask = type == CAPTURES ? enemy : type == QUIETS ? ~occupied : ~0L;
+
+        if(king != NO_SQUARE){
+
+            checkers = board.attackersTo(king, occupied) & enemy;
+            pinned = pinnedPieces(board, us, king);
+
+            long withoutKing = occupied ^ (1L << king);
+            long targets = (fromMask & (1L << king)) != 0 ? Attacks.KING[king] & ~own & typeMask : 0L;
+
+            while(targets != 0){
+
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+
+                if((board.attackersTo(to, withoutKing) & enemy) == 0){
+                    moves[n++] = (enemy & (1L << to)) != 0 ? Move.of(king, to) | Move.CAPTURE : Move.of(king, to);
+                }
+            }
+
+            if(Long.bitCount(checkers) > 1) return n - offset;
+
+            if(checkers != 0){
+                checkMask = checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+            }
+        }
+
+        long targetMask = ~own & checkMask & typeMask;
+
+        long knights = board.pieces(us, KNIGHT) & ~pinned & fromMask;
+        while(knights != 0){
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            n = addMoves(moves, n, from, Attacks.KNIGHT[from] & targetMask, enemy);
+        }
+
+        long diagonal = (board.pieces(us, BISHOP) | board.pieces(us, QUEEN)) & fromMask;
+        while(diagonal != 0){
+            int from = Long.numberOfTrailingZeros(diagonal);
+            diagonal &= diagonal - 1;
+            long targets = Attacks.bishop(from, occupied) & targetMask;
+            if((pinned & (1L << from)) != 0) targets &= Attacks.line(king, from);
+            n = addMoves(moves, n, from, targets, enemy);
+        }
+
+        long straight = (board.pieces(us, ROOK) | board.pieces(us, QUEEN)) & fromMask;
+        while(straight != 0){
+            int from = Long.numberOfTrailingZeros(straight);
+            straight &= straight - 1;
+            long targets = Attacks.rook(from, occupied) & targetMask;
+            if((pinned & (1L << from)) != 0) targets &= Attacks.line(king, from);
+            n = addMoves(moves, n, from, targets, enemy);
+        }
+
+        n = generatePawnMoves(board, moves, n, king, pinned, checkMask, type, fromMask);
+
+        if(checkers == 0 && king != NO_SQUARE && type != CAPTURES && (fromMask & (1L << king)) != 0){
+            n = generateCastling(board, moves, n, king);
+        }
+
+        return n - offset;
+    }
+
+    // Finds the legal move matching the squares and promotion of a parsed move, filling in its flags.
+    // A missing promotion piece defaults to a queen. Returns Move.NONE if no legal move matches.
+    public static int resolve(BitBoard board, int move){
+        return resolve(board, move, new int[MAX_MOVES]);
+    }
+
+    // The same with a caller-owned buffer of MAX_MOVES entries, for callers resolving moves at a high rate
+    public static int resolve(BitBoard board, int move, int[] buffer){
+
+        if(Move.promotion(move) == 0 && board.mailbox[Move.from(move)] == pieceCode(board.sideToMove, PAWN)
+                && (rank(Move.to(move)) == 7 || rank(Move.to(move)) == 0)){
+            move |= Move.of(0, 0, QUEEN);
+        }
+
+        int count = generate(board, buffer, 0, ALL, 1L << Move.from(move));
+
+        for(int i = 0; i < count; i++){
+            if(Move.sameMove(buffer[i], move)) return buffer[i];
+        }
+
+        return Move.NONE;
+    }
+
+    public static long pinnedPieces(BitBoard board, int color, int king){
+
+        long own = board.colors[color];
+        long occupied = board.occupied;
+        int them = color ^ 1;
+
+        long snipers = (Attacks.rook(king, 0L) & (board.pieces(them, ROOK) | board.pieces(them, QUEEN)))
+                | (Attacks.bishop(king, 0L) & (board.pieces(them, BISHOP) | board.pieces(them, QUEEN)));
+
+        long pinned = 0L;
+
+        while(snipers != 0){
+
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+
+            long blockers = Attacks.between(king, sniper) & occupied;
+
+            if(blockers != 0 && (blockers & (blockers - 1)) == 0 && (blockers & own) != 0){
+                pinned |= blockers;
+            }
+        }
+
+        return pinned;
+    }
+
+    private static int addMoves(int[] moves, int n, int from, long targets, long enemy){
+
+        long captures = targets & enemy;
+        while(captures != 0){
+            moves[n++] = Move.of(from, Long.numberOfTrailingZeros(captures)) | Move.CAPTURE;
+            captures &= captures - 1;
+        }
+
+        long quiets = targets & ~enemy;
+        while(quiets != 0){
+            moves[n++] = Move.of(from, Long.numberOfTrailingZeros(quiets));
+            quiets &= quiets - 1;
+        }
+
+        return n;
+    }
+
+    private static int addPawnMove(int[] moves, int n, int from, int to, int flags){
+
+        int promotionRank = rank(to);
+
+        if(promotionRank == 7 || promotionRank == 0){
+            moves[n++] = Move.of(from, to, QUEEN) | flags;
+            moves[n++] = Move.of(from, to, ROOK) | flags;
+            moves[n++] = Move.of(from, to, BISHOP) | flags;
+            moves[n++] = Move.of(from, to, KNIGHT) | flags;
+        }else{
+            moves[n++] = Move.of(from, to) | flags;
+        }
+
+        return n;
+    }
+
+    private static int generatePawnMoves(BitBoard board, int[] moves, int n, int king, long pinned, long checkMask, int type, long fromMask){
+
+        int us = board.sideToMove;
+        int them = us ^ 1;
+
+        long enemy = board.colors[them];
+        long empty = ~board.occupied;
+
+        int push = us == WHITE ? 8 : -8;
+        int startRank = us == WHITE ? 1 : 6;
+        int lastRank = us == WHITE ? 6 : 1;
+
+        long pawns = board.pieces(us, PAWN) & fromMask;
+
+        while(pawns != 0){
+
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+
+            long allowed = checkMask;
+            if((pinned & (1L << from)) != 0) allowed &= Attacks.line(king, from);
+
+            int to = from + push;
+
+            // Pushes to the last rank promote, which makes them captures-stage moves
+            boolean promoting = rank(from) == lastRank;
+
+            if((empty & (1L << to)) != 0 && (type == ALL || (type == CAPTURES) == promoting)){
+
+                if((allowed & (1L << to)) != 0) n = addPawnMove(moves, n, from, to, 0);
+
+                int doubleTo = to + push;
+
+                if(rank(from) == startRank && (empty & (1L << doubleTo)) != 0 && (allowed & (1L << doubleTo)) != 0){
+                    moves[n++] = Move.of(from, doubleTo) | Move.DOUBLE_PUSH;
+                }
+            }
+
+            if(type == QUIETS) continue;
+
+            long captures = Attacks.PAWN[us][from] & enemy & allowed;
+
+            while(captures != 0){
+                n = addPawnMove(moves, n, from, Long.numberOfTrailingZeros(captures), Move.CAPTURE);
+                captures &= captures - 1;
+            }
+
+            if(board.epSquare != NO_SQUARE && (Attacks.PAWN[us][from] & (1L << board.epSquare)) != 0){
+
+                int captured = board.epSquare - push;
+
+                // Removing two pawns from one rank can expose the king, so test the resulting occupancy directly
+                if(king == NO_SQUARE){
+                    moves[n++] = Move.of(from, board.epSquare) | Move.CAPTURE | Move.EN_PASSANT;
+                }else{
+
+                    long occupied = (board.occupied ^ (1L << from) ^ (1L << captured)) | (1L << board.epSquare);
+
+                    if((board.attackersTo(king, occupied) & enemy & ~(1L << captured)) == 0){
+                        moves[n++] = Move.of(from, board.epSquare) | Move.CAPTURE | Move.EN_PASSANT;
+                    }
+                }
+            }
+        }
+
+        return n;
+    }
+
+    private static int generateCastling(BitBoard board, int[] moves, int n, int king){
+
+        int us = board.sideToMove;
+        int them = us ^ 1;
+
+        int home = us == WHITE ? 4 : 60;
+        if(king != home) return n;
+
+        int kingside = us == WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+        int queenside = us == WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+        int rook = pieceCode(us, ROOK);
+
+        if((board.castlingRights & kingside) != 0 && board.mailbox[home + 3] == rook
+                && (board.occupied & Attacks.between(home, home + 3)) == 0
+                && !board.isAttacked(home + 1, them) && !board.isAttacked(home + 2, them)){
+            moves[n++] = Move.of(home, home + 2) | Move.CASTLE;
+        }
+
+        if((board.castlingRights & queenside) != 0 && board.mailbox[home - 4] == rook
+                && (board.occupied & Attacks.between(home, home - 4)) == 0
+                && !board.isAttacked(home - 1, them) && !board.isAttacked(home - 2, them)){
+            moves[n++] = Move.of(home, home - 2) | Move.CASTLE;
+        }
+
+        return n;
+    }
+}
@@ -0,0 +1,34 @@
+package chessEngine.gameState;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// One game from a PGN file: its tag pairs, its main line in SAN, and its result ("1-0", "0-1", "1/2-1/2"
+// or "*")
+public class PgnGame {
+
+    public final Map<String, String> tags = new LinkedHashMap<>();
+    public final List<String> moves = new ArrayList<>();
+    public String result = "*";
+
+    public String tag(String name){
+        return tags.get(name);
+    }
+
+    // Starting position: the FEN tag if there is one, otherwise the standard start
+    public BitBoard startPosition(){
+        String fen = tags.get("FEN");
+        return fen == null ? ChessBoard.START_POSITION.toBitBoard() : Fen.parse(fen);
+    }
+
+    // 1 if white won, -1 if black won, 0 for a draw or an unknown result
+    public int whiteScore(){
+        return result.equals("1-0") ? 1 : result.equals("0-1") ? -1 : 0;
+    }
+
+    public boolean isDecided(){
+        return !result.equals("*");
+    }
+}
@@ -0,0 +1,157 @@
+package chessEngine.gameState;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+// Streams the games of a PGN file through a callback. Only the main line is kept: comments, variations,
+// numeric annotations and move numbers are skipped. A game ends at its result, or at the next tag section
+// if the result is missing.
+public final class PgnReader {
+
+    private final Consumer<PgnGame> handler;
+    private final StringBuilder token = new StringBuilder(64);
+
+    private PgnGame game = new PgnGame();
+    private long games;
+
+    // Set while inside a {comment}, a ;comment or a [tag], to the character that ends it
+    private char skipUntil;
+    private int variationDepth;
+
+    private PgnReader(Consumer<PgnGame> handler){
+        this.handler = handler;
+    }
+
+    public static long read(Path path, Consumer<PgnGame> handler) throws IOException {
+        try(Reader in = Files.newBufferedReader(path, StandardCharsets.ISO_8859_1)){
+            return read(in, handler);
+        }
+    }
+
+    // Returns the number of games passed to the handler
+    public static long read(Reader in, Consumer<PgnGame> handler) throws IOException {
+
+        PgnReader reader = new PgnReader(handler);
+        char[] buffer = new char[1 << 16];
+        int read;
+
+        while((read = in.read(buffer)) != -1){
+            for(int i = 0; i < read; i++){
+                reader.accept(buffer[i]);
+            }
+        }
+
+        reader.endToken();
+        reader.endGame();
+
+        return reader.games;
+    }
+
+    private void accept(char c){
+
+        if(skipUntil != 0){
+
+            if(c == skipUntil){
+                if(skipUntil == ']') addTag();
+                skipUntil = 0;
+                token.setLength(0);
+            }else if(skipUntil == ']'){
+                token.append(c);
+            }
+
+            return;
+        }
+
+        switch(c){
+
+            case '{':
+                endToken();
+                skipUntil = '}';
+                break;
+
+            case ';':
+                endToken();
+                skipUntil = '\n';
+                break;
+
+            case '(':
+                endToken();
+                variationDepth++;
+                break;
+
+            case ')':
+                endToken();
+                variationDepth = Math.max(0, variationDepth - 1);
+                break;
+
+            case '[':
+                endToken();
+                // Tags after moves belong to the next game
+                if(!game.moves.isEmpty()) endGame();
+                skipUntil = ']';
+                break;
+
+            default:
+                if(Character.isWhitespace(c)){
+                    endToken();
+                }else{
+                    token.append(c);
+                }
+        }
+    }
+
+    private void endToken(){
+
+        if(token.length() == 0) return;
+
+        String text = token.toString();
+        token.setLength(0);
+
+        if(variationDepth > 0 || text.charAt(0) == '$') return;
+
+        if(text.equals("1-0") || text.equals("0-1") || text.equals("1/2-1/2") || text.equals("*")){
+            game.result = text;
+            endGame();
+            return;
+        }
+
+        // Move numbers: "12.", "12...", or glued to the move as in "12.e4"
+        int start = 0;
+
+        while(start < text.length() && Character.isDigit(text.charAt(start))) start++;
+
+        if(start < text.length() && text.charAt(start) == '.'){
+            while(start < text.length() && text.charAt(start) == '.') start++;
+        }else{
+            start = 0;
+        }
+
+        if(start < text.length()) game.moves.add(start == 0 ? text : text.substring(start));
+    }
+
+    private void endGame(){
+
+        if(!game.moves.isEmpty() || !game.tags.isEmpty()){
+            handler.accept(game);
+            games++;
+        }
+
+        game = new PgnGame();
+        variationDepth = 0;
+    }
+
+    private void addTag(){
+
+        int space = token.indexOf(" ");
+        int open = token.indexOf("\"");
+        int close = token.lastIndexOf("\"");
+
+        if(space < 0 || open < 0 || close <= open) return;
+
+        game.tags.put(token.substring(0, space).trim(), token.substring(open + 1, close));
+    }
+}
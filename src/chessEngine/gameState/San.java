@@ -0,0 +1,110 @@
+package chessEngine.gameState;
+
+// Standard algebraic notation ("Nbd7", "exd6", "O-O", "e8=Q+"). A SAN move only makes sense in its
+// position, so it is matched against the legal moves there; check marks and annotations are ignored.
+public final class San {
+
+    private static final String pieceNames = "PNBRQK";
+
+    private San(){}
+
+    // Returns the legal move the text names, or Move.NONE if it names none or is ambiguous
+    public static int parse(BitBoard board, CharSequence san){
+
+        int end = san.length();
+
+        while(end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) end--;
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(board, moves, 0);
+
+        if(isCastle(san, end)){
+
+            boolean queenside = end >= 5;
+
+            for(int i = 0; i < count; i++){
+                if(Move.isCastle(moves[i]) && (Move.to(moves[i]) < Move.from(moves[i])) == queenside) return moves[i];
+            }
+
+            return Move.NONE;
+        }
+
+        int start = 0;
+        int type = BitBoard.PAWN;
+
+        if(end > 0 && san.charAt(0) >= 'B' && san.charAt(0) <= 'R'){
+            type = pieceNames.indexOf(san.charAt(0));
+            if(type < 0) return Move.NONE;
+            start = 1;
+        }
+
+        // Promotion, with or without '='
+        int promotion = 0;
+
+        if(end > start && pieceNames.indexOf(san.charAt(end - 1)) > 0){
+            promotion = pieceNames.indexOf(san.charAt(end - 1));
+            end--;
+            if(end > start && san.charAt(end - 1) == '=') end--;
+        }
+
+        if(end - start < 2) return Move.NONE;
+
+        int toFile = san.charAt(end - 2) - 'a';
+        int toRank = san.charAt(end - 1) - '1';
+
+        if(toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) return Move.NONE;
+
+        // Whatever is left between the piece and the destination is disambiguation and 'x'
+        int fromFile = -1;
+        int fromRank = -1;
+
+        for(int i = start; i < end - 2; i++){
+
+            char c = san.charAt(i);
+
+            if(c >= 'a' && c <= 'h'){
+                fromFile = c - 'a';
+            }else if(c >= '1' && c <= '8'){
+                fromRank = c - '1';
+            }else if(c != 'x' && c != ':' && c != '-'){
+                return Move.NONE;
+            }
+        }
+
+        int to = BitBoard.square(toFile, toRank);
+        int found = Move.NONE;
+
+        for(int i = 0; i < count; i++){
+
+            int move = moves[i];
+            int from = Move.from(move);
+
+            if(Move.to(move) != to || Move.isCastle(move)) continue;
+            if(BitBoard.pieceType(board.mailbox[from]) != type) continue;
+            if(Move.promotion(move) != promotion) continue;
+            if(fromFile >= 0 && BitBoard.file(from) != fromFile) continue;
+            if(fromRank >= 0 && BitBoard.rank(from) != fromRank) continue;
+
+            if(found != Move.NONE) return Move.NONE;
+
+            found = move;
+        }
+
+        return found;
+    }
+
+    // "O-O", "O-O-O", and the same with zeros
+    private static boolean isCastle(CharSequence san, int end){
+
+        if(end != 3 && end != 5) return false;
+
+        for(int i = 0; i < end; i++){
+
+            char c = san.charAt(i);
+
+            if(i % 2 == 1 ? c != '-' : c != 'O' && c != '0') return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+package chessEngine.gameState;
+
+import static chessEngine.gameState.BitBoard.*;
+
+public final class StaticExchange {
+
+    // Centipawn values by piece type, used only to score exchanges
+    public static final int[] VALUES = {100, 320, 330, 500, 900, 20000};
+
+    // Length of the scratch array the evaluate overloads take; exchanges longer than this are cut short
+    public static final int MAX_EXCHANGE = 32;
+
+    private StaticExchange(){}
+
+    // Material gained by the side to move if both sides keep recapturing on the target square with their
+    // least valuable attacker, each free to stop when continuing would lose material. Sliders hidden behind
+    // a capturing piece join in once it has moved.
+    public static int evaluate(BitBoard board, int move){
+        return evaluate(board, move, new int[MAX_EXCHANGE]);
+    }
+
+    // gain is scratch space of MAX_EXCHANGE entries, so a search can evaluate exchanges without allocating
+    public static int evaluate(BitBoard board, int move, int[] gain){
+        return evaluate(board, move, board.attackersTo(Move.to(move), board.occupied), gain);
+    }
+
+    // The same from an attack map of the board: a move to a square the opponent neither attacks nor sees
+    // through other pieces wins its capture outright, without playing out any exchange
+    public static int evaluate(AttackMap map, int move){
+        return evaluate(map, move, new int[MAX_EXCHANGE]);
+    }
+
+    public static int evaluate(AttackMap map, int move, int[] gain){
+
+        BitBoard board = map.board();
+        int to = Move.to(move);
+        int them = board.sideToMove ^ 1;
+
+        if(!map.isAttacked(to, them) && map.xrayAttackersTo(to, them) == 0) return initialGain(board, move);
+
+        return evaluate(board, move, map.attackersTo(to), gain);
+    }
+
+    private static int initialGain(BitBoard board, int move){
+
+        int to = Move.to(move);
+        int gain = Move.isEnPassant(move) ? VALUES[PAWN] : board.mailbox[to] == EMPTY ? 0 : VALUES[pieceType(board.mailbox[to])];
+
+        if(Move.isPromotion(move)) gain += VALUES[Move.promotion(move)] - VALUES[PAWN];
+
+        return gain;
+    }
+
+    // attackers holds every piece attacking the target square before the move is made
+    private static int evaluate(BitBoard board, int move, long attackers, int[] gain){
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+
+        long occupied = board.occupied ^ (1L << from);
+        int attackerType = Move.isPromotion(move) ? Move.promotion(move) : pieceType(board.mailbox[from]);
+
+        if(Move.isEnPassant(move)) occupied ^= 1L << (board.sideToMove == WHITE ? to - 8 : to + 8);
+
+        gain[0] = initialGain(board, move);
+
+        long diagonal = board.pieces[BISHOP] | board.pieces[6 + BISHOP] | board.pieces[QUEEN] | board.pieces[6 + QUEEN];
+        long straight = board.pieces[ROOK] | board.pieces[6 + ROOK] | board.pieces[QUEEN] | board.pieces[6 + QUEEN];
+
+        // Sliders behind the moving piece, or behind a pawn taken en passant, join in
+        attackers |= (Attacks.bishop(to, occupied) & diagonal) | (Attacks.rook(to, occupied) & straight);
+        attackers &= occupied;
+
+        int side = board.sideToMove ^ 1;
+        int victimValue = VALUES[attackerType];
+        int d = 0;
+
+        while(true){
+
+            long sideAttackers = attackers & board.colors[side];
+            if(sideAttackers == 0) break;
+
+            int type = PAWN;
+            long piece = 0L;
+
+            for(; type <= KING; type++){
+                piece = sideAttackers & board.pieces[pieceCode(side, type)];
+                if(piece != 0) break;
+            }
+
+            // A king may only take if nothing can take it back
+            if(type == KING && (attackers & board.colors[side ^ 1]) != 0) break;
+
+            d++;
+            gain[d] = victimValue - gain[d - 1];
+
+            if(Math.max(-gain[d - 1], gain[d]) < 0) break;
+            if(d == MAX_EXCHANGE - 1) break;
+
+            occupied ^= piece & -piece;
+
+            if(type == PAWN || type == BISHOP || type == QUEEN) attackers |= Attacks.bishop(to, occupied) & diagonal;
+            if(type == ROOK || type == QUEEN) attackers |= Attacks.rook(to, occupied) & straight;
+
+            attackers &= occupied;
+
+            victimValue = VALUES[type];
+            side ^= 1;
+        }
+
+        while(d > 0){
+            gain[d - 1] = -Math.max(-gain[d - 1], gain[d]);
+            d--;
+        }
+
+        return gain[0];
+    }
+}
@@ -0,0 +1,100 @@
+package chessEngine.gameState;
+
+public final class Zobrist {
+
+    public static final long[][] PIECES = new long[12][64];
+    public static final long SIDE;
+    public static final long[] CASTLING = new long[16];
+    public static final long[] EN_PASSANT = new long[8];
+
+    private Zobrist(){}
+
+    static {
+
+        // Fixed seed so keys are stable across runs and can be stored in books and tables
+        long[] seed = {0x9E3779B97F4A7C15L};
+
+        for(int piece = 0; piece < 12; piece++){
+            for(int sq = 0; sq < 64; sq++){
+                PIECES[piece][sq] = nextRandom(seed);
+            }
+        }
+
+        SIDE = nextRandom(seed);
+
+        long[] rights = new long[4];
+        for(int i = 0; i < 4; i++){
+            rights[i] = nextRandom(seed);
+        }
+
+        // One entry per combination of rights so an update is a single XOR pair
+        for(int i = 0; i < 16; i++){
+            for(int bit = 0; bit < 4; bit++){
+                if((i & (1 << bit)) != 0) CASTLING[i] ^= rights[bit];
+            }
+        }
+
+        for(int file = 0; file < 8; file++){
+            EN_PASSANT[file] = nextRandom(seed);
+        }
+    }
+
+    private static long nextRandom(long[] seed){
+        long z = (seed[0] += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static long compute(BitBoard board){
+
+        long key = 0L;
+
+        for(int sq = 0; sq < 64; sq++){
+            if(board.mailbox[sq] != BitBoard.EMPTY) key ^= PIECES[board.mailbox[sq]][sq];
+        }
+
+        if(board.sideToMove == BitBoard.BLACK) key ^= SIDE;
+        key ^= CASTLING[board.castlingRights];
+        if(board.epSquare != BitBoard.NO_SQUARE) key ^= EN_PASSANT[BitBoard.file(board.epSquare)];
+
+        return key;
+    }
+
+    public static long compute(ChessPiece[][] boardState, boolean[][] castlingInfo, boolean isWhiteTurn){
+
+        long key = 0L;
+
+        for(int x = 0; x < 8; x++){
+            for(int y = 0; y < 8; y++){
+                key ^= squareKey(boardState[x][y], x, y);
+            }
+        }
+
+        if(!isWhiteTurn) key ^= SIDE;
+        key ^= CASTLING[castlingIndex(castlingInfo)];
+
+        return key;
+    }
+
+    // Key contribution of one ChessBoard square; en-passant ghost pawns hash as the en-passant file
+    public static long squareKey(ChessPiece piece, int x, int y){
+
+        switch(piece){
+            case none:
+                return 0L;
+            case wEpPawn:
+            case bEpPawn:
+                return EN_PASSANT[x];
+            default:
+                return PIECES[BitBoard.pieceCode(piece)][BitBoard.square(x, y)];
+        }
+    }
+
+    public static int castlingIndex(boolean[][] castlingInfo){
+        return (castlingInfo[0][1] ? BitBoard.WHITE_KINGSIDE : 0)
+                | (castlingInfo[0][0] ? BitBoard.WHITE_QUEENSIDE : 0)
+                | (castlingInfo[1][1] ? BitBoard.BLACK_KINGSIDE : 0)
+                | (castlingInfo[1][0] ? BitBoard.BLACK_QUEENSIDE : 0);
+    }
+}
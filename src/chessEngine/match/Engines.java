@@ -0,0 +1,108 @@
+package chessEngine.match;
+
+import chessEngine.ai.*;
+
+import java.lang.reflect.Field;
+import java.util.function.Supplier;
+
+// Engines named on the command line. Every game gets fresh instances, so no table or history carries over.
+//
+//   advanced[:option=value,...]   AdvancedAI; options are hash (MB), threads, and any SearchParams field,
+//                                 e.g. "advanced:nullMove=false,lateMoveBase=1.0"
+//   random                        RandomAI
+//   <class name>                  any ChessAI with a public no-argument constructor
+public final class Engines {
+
+    private Engines(){}
+
+    public static Supplier<ChessAI> parse(String spec){
+
+        int colon = spec.indexOf(':');
+        String name = colon < 0 ? spec : spec.substring(0, colon);
+        String[] options = colon < 0 ? new String[0] : spec.substring(colon + 1).split(",");
+
+        switch(name){
+            case "advanced": return advanced(options);
+            case "random": return RandomAI::new;
+            default: return byClass(name);
+        }
+    }
+
+    private static Supplier<ChessAI> advanced(String[] options){
+
+        SearchParams params = new SearchParams();
+        int hashMb = 16;
+        int threads = 1;
+
+        for(String option : options){
+
+            int equals = option.indexOf('=');
+
+            if(equals < 0) throw new IllegalArgumentException("Expected option=value: " + option);
+
+            String key = option.substring(0, equals);
+            String value = option.substring(equals + 1);
+
+            if(key.equals("hash")){
+                hashMb = Integer.parseInt(value);
+            }else if(key.equals("threads")){
+                threads = Integer.parseInt(value);
+            }else{
+                setParam(params, key, value);
+            }
+        }
+
+        int hash = hashMb;
+        int threadCount = threads;
+
+        return () -> {
+
+            AdvancedAI ai = new AdvancedAI(0, hash);
+
+            ai.setThreads(threadCount);
+            ai.setParams(params.copy());
+
+            return ai;
+        };
+    }
+
+    private static void setParam(SearchParams params, String name, String value){
+
+        try{
+
+            Field field = SearchParams.class.getField(name);
+
+            if(field.getType() == boolean.class){
+                field.setBoolean(params, Boolean.parseBoolean(value));
+            }else if(field.getType() == int.class){
+                field.setInt(params, Integer.parseInt(value));
+            }else{
+                field.setDouble(params, Double.parseDouble(value));
+            }
+
+        }catch(NoSuchFieldException | IllegalAccessException e){
+            throw new IllegalArgumentException("Unknown search parameter: " + name);
+        }
+    }
+
+    private static Supplier<ChessAI> byClass(String name){
+
+        Class<?> type;
+
+        try{
+            type = Class.forName(name);
+        }catch(ClassNotFoundException e){
+            throw new IllegalArgumentException("Unknown engine: " + name);
+        }
+
+        if(!ChessAI.class.isAssignableFrom(type)) throw new IllegalArgumentException(name + " is not a ChessAI");
+
+        return () -> {
+            try{
+                return (ChessAI) type.getConstructor().newInstance();
+            }catch(ReflectiveOperationException e){
+                throw new IllegalStateException("Could not create " + name, e);
+            }
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package chessEngine.match;
+
+import chessEngine.ai.*;
+import chessEngine.gameState.*;
+
+// Plays one game between two engines from a given position. Clocks run on wall time around each call to an
+// engine. An engine loses if its flag falls, if it returns no move or an illegal one, or if it throws. Games
+// still going after maxPlies are scored as draws.
+public final class Game {
+
+    private Game(){}
+
+    public static GameResult play(ChessBoard start, ChessAI white, ChessAI black, TimeControl timeControl, int maxPlies){
+
+        ChessBoard board = start;
+        long[] clocks = {timeControl.baseMs, timeControl.baseMs};
+
+        for(int ply = 0; ; ply++){
+
+            boolean whiteToMove = board.isWhiteTurn;
+
+            if(board.getValidMoves().length == 0){
+                return board.isInCheck(whiteToMove)
+                        ? GameResult.checkmate(whiteToMove, ply)
+                        : GameResult.draw("stalemate", ply);
+            }
+
+            if(board.isInsufficientMaterial()) return GameResult.draw("insufficient material", ply);
+            if(board.isThreefoldRepetition()) return GameResult.draw("repetition", ply);
+            if(board.halfmoveClock >= 100) return GameResult.draw("fifty-move rule", ply);
+            if(ply >= maxPlies) return GameResult.draw("move limit", ply);
+
+            int side = whiteToMove ? 0 : 1;
+            ChessAI engine = whiteToMove ? white : black;
+
+            long started = System.nanoTime();
+            ChessMove move;
+
+            try{
+                move = engine.getAIMove(board, timeControl.limits(clocks[side]));
+            }catch(RuntimeException e){
+                return GameResult.forfeit(whiteToMove, "engine error: " + e, ply);
+            }
+
+            if(timeControl.hasClock()){
+
+                clocks[side] -= (System.nanoTime() - started) / 1000000;
+
+                if(clocks[side] < 0) return GameResult.forfeit(whiteToMove, "time forfeit", ply);
+
+                clocks[side] += timeControl.incrementMs;
+            }
+
+            ChessBoard next = move == null ? null : board.applyMove(move);
+
+            if(next == null) return GameResult.forfeit(whiteToMove, "illegal move " + move, ply);
+
+            board = next;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package chessEngine.match;
+
+public final class GameResult {
+
+    public enum Outcome { WHITE_WINS, DRAW, BLACK_WINS }
+
+    public final Outcome outcome;
+    public final String reason;
+    public final int plies;
+    // Lost by the rules of the match rather than on the board: time, an illegal move or an engine error
+    public final boolean forfeit;
+
+    GameResult(Outcome outcome, String reason, int plies, boolean forfeit){
+        this.outcome = outcome;
+        this.reason = reason;
+        this.plies = plies;
+        this.forfeit = forfeit;
+    }
+
+    static GameResult draw(String reason, int plies){
+        return new GameResult(Outcome.DRAW, reason, plies, false);
+    }
+
+    static GameResult checkmate(boolean whiteMated, int plies){
+        return new GameResult(whiteMated ? Outcome.BLACK_WINS : Outcome.WHITE_WINS, "checkmate", plies, false);
+    }
+
+    static GameResult forfeit(boolean white, String reason, int plies){
+        return new GameResult(white ? Outcome.BLACK_WINS : Outcome.WHITE_WINS, reason, plies, true);
+    }
+
+    // 1, 0.5 or 0 for the engine that had white
+    public double whiteScore(){
+        return outcome == Outcome.WHITE_WINS ? 1 : outcome == Outcome.DRAW ? 0.5 : 0;
+    }
+
+    public String toString(){
+
+        String result = outcome == Outcome.WHITE_WINS ? "1-0" : outcome == Outcome.DRAW ? "1/2-1/2" : "0-1";
+
+        return result + " (" + reason + ", " + plies + " plies)";
+    }
+}
@@ -0,0 +1,252 @@
+package chessEngine.match;
+
+import chessEngine.ai.*;
+import chessEngine.gameState.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Plays a match between two engines, many games at once. Games come in pairs: each opening is played once
+// with either engine as white, so an unbalanced opening favours neither. Deterministic engines repeat the
+// same game from the same position, so the openings should be varied, from a file or by random plies.
+// With an SPRT the match ends as soon as the test is decided; games already running still count.
+public class MatchRunner {
+
+    private final Supplier<ChessAI> first;
+    private final Supplier<ChessAI> second;
+    private final TimeControl timeControl;
+
+    private List<ChessBoard> openings = Collections.singletonList(ChessBoard.START_POSITION);
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+    private int randomPlies;
+    private int maxPlies = 400;
+    private long seed;
+    private Sprt sprt;
+
+    private PrintStream log = System.out;
+    private int reportInterval = 10;
+
+    private final MatchStatistics statistics = new MatchStatistics();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private final AtomicInteger completed = new AtomicInteger();
+
+    public MatchRunner(Supplier<ChessAI> first, Supplier<ChessAI> second, TimeControl timeControl){
+        this.first = first;
+        this.second = second;
+        this.timeControl = timeControl;
+    }
+
+    public void setOpenings(List<ChessBoard> openings){
+        if(openings.isEmpty()) throw new IllegalArgumentException("No openings");
+        this.openings = openings;
+    }
+
+    // Games played at the same time; more than there are cores makes the engines lose time to each other
+    public void setConcurrency(int concurrency){
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    // Random legal moves played from each opening before the engines take over, the same for both games of a pair
+    public void setRandomPlies(int randomPlies){
+        this.randomPlies = randomPlies;
+    }
+
+    public void setMaxPlies(int maxPlies){
+        this.maxPlies = maxPlies;
+    }
+
+    public void setSeed(long seed){
+        this.seed = seed;
+    }
+
+    public void setSprt(Sprt sprt){
+        this.sprt = sprt;
+    }
+
+    // Progress is printed every reportInterval games; null for no output
+    public void setLog(PrintStream log, int reportInterval){
+        this.log = log;
+        this.reportInterval = Math.max(1, reportInterval);
+    }
+
+    public MatchStatistics getStatistics(){
+        return statistics;
+    }
+
+    // Plays up to games games, rounded up to whole pairs, and returns the totals
+    public MatchStatistics run(int games) throws InterruptedException {
+
+        int pairs = (games + 1) / 2;
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "match-game");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for(int pair = 0; pair < pairs; pair++){
+
+            ChessBoard opening = opening(pair);
+
+            for(int game = 0; game < 2; game++){
+                boolean firstIsWhite = game == 0;
+                executor.execute(() -> playGame(opening, firstIsWhite));
+            }
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+        if(log != null){
+
+            log.println(statistics);
+
+            if(sprt != null){
+                int decision = sprt.decide(statistics);
+                log.println(sprt.describe(statistics) + ": " + (decision == Sprt.ACCEPT_H1 ? "H1 accepted" : decision == Sprt.ACCEPT_H0 ? "H0 accepted" : "undecided"));
+            }
+        }
+
+        return statistics;
+    }
+
+    private ChessBoard opening(int pair){
+
+        ChessBoard board = openings.get(pair % openings.size());
+        Random random = new Random(seed * 31 + pair);
+
+        for(int ply = 0; ply < randomPlies; ply++){
+
+            ChessMove[] moves = board.getValidMoves();
+
+            if(moves.length == 0) break;
+
+            board = board.applyMove(moves[random.nextInt(moves.length)]);
+        }
+
+        return board;
+    }
+
+    private void playGame(ChessBoard opening, boolean firstIsWhite){
+
+        if(stopped.get()) return;
+
+        ChessAI firstEngine = first.get();
+        ChessAI secondEngine = second.get();
+
+        GameResult result = firstIsWhite
+                ? Game.play(opening, firstEngine, secondEngine, timeControl, maxPlies)
+                : Game.play(opening, secondEngine, firstEngine, timeControl, maxPlies);
+
+        statistics.add(firstIsWhite ? result.whiteScore() : 1 - result.whiteScore());
+
+        int count = completed.incrementAndGet();
+
+        if(sprt != null && sprt.decide(statistics) != Sprt.CONTINUE) stopped.set(true);
+
+        if(log != null) report(count, result);
+    }
+
+    // Forfeits are worth a look, since they usually point at a bug rather than a bad move
+    private synchronized void report(int count, GameResult result){
+
+        if(result.forfeit) log.println("Game " + count + ": " + result);
+
+        if(count % reportInterval == 0) log.println(statistics + (sprt != null ? ", " + sprt.describe(statistics) : ""));
+    }
+
+    // Lines of FEN or EPD; blank lines and lines starting with '#' are skipped
+    public static List<ChessBoard> readOpenings(Path path) throws IOException {
+
+        List<ChessBoard> openings = new ArrayList<>();
+
+        for(String line : Files.readAllLines(path, StandardCharsets.UTF_8)){
+
+            line = line.trim();
+
+            if(line.isEmpty() || line.startsWith("#")) continue;
+
+            BitBoard board;
+
+            try{
+                board = Fen.parse(line);
+            }catch(IllegalArgumentException e){
+                board = new BitBoard(EpdRecord.of(line).board());
+            }
+
+            openings.add(board.toChessBoard());
+        }
+
+        return openings;
+    }
+
+    // Usage: MatchRunner <engine> <engine> [--games n] [--tc 10+0.1 | movetime=ms | depth=n | nodes=n]
+    //        [--concurrency n] [--openings file] [--random-plies n] [--max-plies n]
+    //        [--sprt elo0,elo1[,alpha,beta]] [--seed n] [--report n]
+    // Engines are named as described in Engines, e.g. "advanced" or "advanced:nullMove=false,hash=8".
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        if(args.length < 2){
+            System.out.println("Usage: MatchRunner <engine> <engine> [--games n] [--tc 10+0.1 | movetime=ms | depth=n | nodes=n]"
+                    + " [--concurrency n] [--openings file] [--random-plies n] [--max-plies n] [--sprt elo0,elo1[,alpha,beta]] [--seed n] [--report n]");
+            return;
+        }
+
+        int games = 100;
+        TimeControl timeControl = TimeControl.parse("10+0.1");
+        List<String> options = new ArrayList<>();
+
+        for(int i = 2; i < args.length; i++){
+            if(args[i].equals("--games")){
+                games = Integer.parseInt(args[++i]);
+            }else if(args[i].equals("--tc")){
+                timeControl = TimeControl.parse(args[++i]);
+            }else{
+                options.add(args[i]);
+            }
+        }
+
+        MatchRunner runner = new MatchRunner(Engines.parse(args[0]), Engines.parse(args[1]), timeControl);
+        int reportInterval = 10;
+
+        for(int i = 0; i < options.size(); i++){
+
+            String option = options.get(i);
+
+            if(i + 1 == options.size()) throw new IllegalArgumentException("Missing value for " + option);
+
+            String value = options.get(++i);
+
+            switch(option){
+                case "--concurrency": runner.setConcurrency(Integer.parseInt(value)); break;
+                case "--openings": runner.setOpenings(readOpenings(Paths.get(value))); break;
+                case "--random-plies": runner.setRandomPlies(Integer.parseInt(value)); break;
+                case "--max-plies": runner.setMaxPlies(Integer.parseInt(value)); break;
+                case "--sprt": runner.setSprt(Sprt.parse(value)); break;
+                case "--seed": runner.setSeed(Long.parseLong(value)); break;
+                case "--report": reportInterval = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+
+        runner.setLog(System.out, reportInterval);
+
+        System.out.println(args[0] + " vs " + args[1] + ", " + timeControl + ", " + runner.concurrency + " at a time");
+
+        runner.run(games);
+    }
+}
@@ -0,0 +1,117 @@
+package chessEngine.match;
+
+// Running totals of a match from the first engine's point of view, and what they say about the Elo
+// difference. Error bars and the log-likelihood ratio use the normal approximation of the per-game score,
+// which is accurate once a few dozen games have been played.
+public final class MatchStatistics {
+
+    // Half a game of each result is added for the likelihood ratio, so a one-sided start has a variance and a
+    // handful of games cannot decide a test; over a real match the bias is negligible
+    private static final double REGULARIZATION = 0.5;
+
+    private int wins;
+    private int draws;
+    private int losses;
+
+    // score is 1, 0.5 or 0 for the first engine
+    public synchronized void add(double score){
+        if(score > 0.5){
+            wins++;
+        }else if(score < 0.5){
+            losses++;
+        }else{
+            draws++;
+        }
+    }
+
+    public synchronized int getWins(){
+        return wins;
+    }
+
+    public synchronized int getDraws(){
+        return draws;
+    }
+
+    public synchronized int getLosses(){
+        return losses;
+    }
+
+    public synchronized int getGames(){
+        return wins + draws + losses;
+    }
+
+    public synchronized double score(){
+        int games = getGames();
+        return games == 0 ? 0.5 : (wins + draws * 0.5) / games;
+    }
+
+    public synchronized double elo(){
+        return elo(score());
+    }
+
+    // Half the width of the 95% confidence interval around elo()
+    public synchronized double eloError(){
+
+        int games = getGames();
+        double score = score();
+
+        if(games == 0 || wins == games || losses == games) return Double.POSITIVE_INFINITY;
+
+        double margin = 1.959964 * Math.sqrt(variance(wins, draws, losses) / games);
+
+        return (elo(Math.min(score + margin, 1)) - elo(Math.max(score - margin, 0))) / 2;
+    }
+
+    // Likelihood of superiority: the probability that the first engine is the stronger one
+    public synchronized double los(){
+        int decisive = wins + losses;
+        return decisive == 0 ? 0.5 : 0.5 * (1 + erf((wins - losses) / Math.sqrt(2.0 * decisive)));
+    }
+
+    // Log-likelihood ratio of the Elo difference being elo1 rather than elo0
+    public synchronized double llr(double elo0, double elo1){
+
+        double w = wins + REGULARIZATION;
+        double d = draws + REGULARIZATION;
+        double l = losses + REGULARIZATION;
+        double games = w + d + l;
+
+        double score = (w + d * 0.5) / games;
+
+        double score0 = expectedScore(elo0);
+        double score1 = expectedScore(elo1);
+
+        return games * (score1 - score0) * (2 * score - score0 - score1) / (2 * variance(w, d, l));
+    }
+
+    // Variance of a single game's score around the mean score
+    private static double variance(double w, double d, double l){
+
+        double games = w + d + l;
+        double score = (w + d * 0.5) / games;
+
+        return (w * (1 - score) * (1 - score) + d * (0.5 - score) * (0.5 - score) + l * score * score) / games;
+    }
+
+    public static double elo(double score){
+        return 400 * Math.log10(score / (1 - score));
+    }
+
+    public static double expectedScore(double elo){
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    // Abramowitz and Stegun 7.1.26, good to about 1e-7
+    private static double erf(double x){
+
+        double t = 1 / (1 + 0.3275911 * Math.abs(x));
+        double y = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429)))) * Math.exp(-x * x);
+
+        return x >= 0 ? y : -y;
+    }
+
+    public synchronized String toString(){
+        return String.format("Games %d: +%d =%d -%d, score %.1f%%, Elo %.1f +/- %.1f, LOS %.1f%%",
+                getGames(), wins, draws, losses, score() * 100, elo(), eloError(), los() * 100);
+    }
+}
@@ -0,0 +1,56 @@
+package chessEngine.match;
+
+// Sequential probability ratio test between two hypotheses about the Elo difference, elo0 (usually 0: the
+// change does nothing) and elo1 (the gain hoped for). The match stops as soon as the log-likelihood ratio
+// leaves the interval set by the error rates: alpha is the chance of accepting elo1 when elo0 holds, beta
+// the reverse. Most changes are decided in a fraction of the games a fixed-length match would need.
+public final class Sprt {
+
+    public static final int CONTINUE = 0;
+    public static final int ACCEPT_H0 = -1;
+    public static final int ACCEPT_H1 = 1;
+
+    public final double elo0;
+    public final double elo1;
+    public final double alpha;
+    public final double beta;
+
+    public Sprt(double elo0, double elo1, double alpha, double beta){
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    // "elo0,elo1" or "elo0,elo1,alpha,beta"; the error rates default to 5%
+    public static Sprt parse(String text){
+
+        String[] parts = text.split(",");
+
+        if(parts.length != 2 && parts.length != 4) throw new IllegalArgumentException("Expected elo0,elo1[,alpha,beta]: " + text);
+
+        double alpha = parts.length == 4 ? Double.parseDouble(parts[2]) : 0.05;
+        double beta = parts.length == 4 ? Double.parseDouble(parts[3]) : 0.05;
+
+        return new Sprt(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), alpha, beta);
+    }
+
+    public double lowerBound(){
+        return Math.log(beta / (1 - alpha));
+    }
+
+    public double upperBound(){
+        return Math.log((1 - beta) / alpha);
+    }
+
+    public int decide(MatchStatistics statistics){
+
+        double llr = statistics.llr(elo0, elo1);
+
+        return llr >= upperBound() ? ACCEPT_H1 : llr <= lowerBound() ? ACCEPT_H0 : CONTINUE;
+    }
+
+    public String describe(MatchStatistics statistics){
+        return String.format("LLR %.2f (%.2f, %.2f) [%.1f, %.1f]", statistics.llr(elo0, elo1), lowerBound(), upperBound(), elo0, elo1);
+    }
+}
@@ -0,0 +1,65 @@
+package chessEngine.match;
+
+import chessEngine.ai.SearchLimits;
+
+// How long each engine may think: a game clock with an increment, written "10+0.1" in seconds, or a fixed
+// budget per move, written "movetime=100", "depth=6" or "nodes=20000". Only a game clock can run out.
+public final class TimeControl {
+
+    public final long baseMs;
+    public final long incrementMs;
+
+    // Limits for every move, or null when a clock is kept
+    private final SearchLimits fixed;
+
+    private TimeControl(long baseMs, long incrementMs, SearchLimits fixed){
+        this.baseMs = baseMs;
+        this.incrementMs = incrementMs;
+        this.fixed = fixed;
+    }
+
+    public static TimeControl clock(long baseMs, long incrementMs){
+        return new TimeControl(baseMs, incrementMs, null);
+    }
+
+    public static TimeControl fixed(SearchLimits limits){
+        return new TimeControl(0, 0, limits);
+    }
+
+    public static TimeControl parse(String text){
+
+        int equals = text.indexOf('=');
+
+        if(equals >= 0){
+
+            long value = Long.parseLong(text.substring(equals + 1));
+
+            switch(text.substring(0, equals)){
+                case "movetime": return fixed(SearchLimits.moveTime(value));
+                case "depth": return fixed(SearchLimits.depth((int) value));
+                case "nodes": return fixed(new SearchLimits(0, 0, 0, value));
+                default: throw new IllegalArgumentException("Bad time control: " + text);
+            }
+        }
+
+        int plus = text.indexOf('+');
+
+        double base = Double.parseDouble(plus < 0 ? text : text.substring(0, plus));
+        double increment = plus < 0 ? 0 : Double.parseDouble(text.substring(plus + 1));
+
+        return clock(Math.round(base * 1000), Math.round(increment * 1000));
+    }
+
+    public boolean hasClock(){
+        return fixed == null;
+    }
+
+    // Limits for a move with remainingMs left on the mover's clock
+    public SearchLimits limits(long remainingMs){
+        return fixed != null ? fixed : SearchLimits.clock(remainingMs, incrementMs, 0);
+    }
+
+    public String toString(){
+        return fixed != null ? fixed.toString() : baseMs / 1000.0 + "+" + incrementMs / 1000.0;
+    }
+}
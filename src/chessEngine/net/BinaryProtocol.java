@@ -0,0 +1,155 @@
+package chessEngine.net;
+
+import chessEngine.gameState.*;
+
+import java.nio.ByteBuffer;
+
+// Binary form of the ChessServer protocol. A client selects it by sending MAGIC as its first byte; after
+// that every message is a frame:
+//
+//   int length        bytes after this field
+//   byte type
+//   int requestId     chosen by the client and echoed in the reply, so requests can be pipelined
+//   payload
+//
+// All numbers are big-endian. Moves are the packed ints of Move without flags; positions are packed as
+//
+//   long key, byte side, byte castling rights, byte en-passant square (-1 for none), long occupancy,
+//   then one 4-bit piece code (BitBoard codes) per occupied square in square order, low nibble first.
+//
+// The key lets either side check a position arrived intact, and both sides can cache by it.
+public final class BinaryProtocol {
+
+    public static final int MAGIC = 0xC5;
+
+    // Requests and their payloads
+    public static final int NEW = 1;        // packed position, or nothing for the start position
+    public static final int MOVE = 2;       // int game, int move
+    public static final int GO = 3;         // int game, int budget in ms (0 for the server default)
+    public static final int POSITION = 4;   // int game
+    public static final int CLOSE = 5;      // int game
+    public static final int PING = 6;       // nothing
+
+    // Replies and their payloads
+    public static final int GAME = 0x81;        // int game
+    public static final int OK = 0x82;          // int game
+    public static final int BEST_MOVE = 0x83;   // int game, int move, int score
+    public static final int POSITION_IS = 0x84; // int game, packed position
+    public static final int CLOSED = 0x85;      // int game
+    public static final int PONG = 0x86;        // nothing
+    public static final int ERROR = 0xFF;       // byte error code
+
+    public static final int BAD_REQUEST = 1;
+    public static final int NO_GAME = 2;
+    public static final int ILLEGAL_MOVE = 3;
+    public static final int TOO_MANY_GAMES = 4;
+    public static final int NO_LEGAL_MOVES = 5;
+    public static final int INTERNAL_ERROR = 6; // the server failed; the game may or may not have changed
+
+    // Frame header after the length field: type and request id
+    public static final int HEADER = 5;
+
+    // Largest frame either side has to accept: a header plus a full packed position
+    public static final int MAX_FRAME = HEADER + 4 + 8 + 3 + 8 + 16;
+
+    private BinaryProtocol(){}
+
+    public static int positionSize(BitBoard board){
+        return 8 + 3 + 8 + (Long.bitCount(board.occupied) + 1) / 2;
+    }
+
+    public static void writePosition(ByteBuffer out, BitBoard board){
+
+        out.putLong(board.key);
+        out.put((byte) board.sideToMove);
+        out.put((byte) board.castlingRights);
+        out.put((byte) board.epSquare);
+        out.putLong(board.occupied);
+
+        long occupied = board.occupied;
+        int pending = -1;
+
+        while(occupied != 0){
+
+            int code = board.mailbox[Long.numberOfTrailingZeros(occupied)];
+            occupied &= occupied - 1;
+
+            if(pending < 0){
+                pending = code;
+            }else{
+                out.put((byte) (pending | code << 4));
+                pending = -1;
+            }
+        }
+
+        if(pending >= 0) out.put((byte) pending);
+    }
+
+    // Reads a packed position into board; returns false if it is malformed or does not match its key
+    public static boolean readPosition(ByteBuffer in, BitBoard board){
+
+        if(in.remaining() < 19) return false;
+
+        long key = in.getLong();
+        int side = in.get();
+        int castling = in.get();
+        int ep = in.get();
+        long occupied = in.getLong();
+
+        if(side != BitBoard.WHITE && side != BitBoard.BLACK) return false;
+        if((castling & ~15) != 0) return false;
+        if(ep != BitBoard.NO_SQUARE && (ep < 0 || ep > 63 || (BitBoard.rank(ep) != 2 && BitBoard.rank(ep) != 5))) return false;
+        if(in.remaining() < (Long.bitCount(occupied) + 1) / 2) return false;
+
+        board.clear();
+
+        int packed = 0;
+        boolean high = false;
+
+        while(occupied != 0){
+
+            int sq = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+
+            int code;
+
+            if(high){
+                code = packed >>> 4 & 15;
+            }else{
+                packed = in.get();
+                code = packed & 15;
+            }
+
+            high = !high;
+
+            if(code >= BitBoard.EMPTY) return false;
+
+            board.put(code, sq);
+        }
+
+        board.sideToMove = side;
+        board.castlingRights = castling;
+        board.epSquare = ep;
+        board.key = Zobrist.compute(board);
+
+        return board.key == key;
+    }
+
+    // Starts a frame; the caller writes the payload and then calls endFrame with the returned position
+    public static int beginFrame(ByteBuffer out, int type, int requestId){
+        int start = out.position();
+        out.putInt(0);
+        out.put((byte) type);
+        out.putInt(requestId);
+        return start;
+    }
+
+    public static void endFrame(ByteBuffer out, int start){
+        out.putInt(start, out.position() - start - 4);
+    }
+
+    // The packed move of the wire format: from, to and promotion, without flags
+    public static int wireMove(int move){
+        return move & 0x7FFF;
+    }
+}
@@ -1,75 +1,703 @@
 package chessEngine.net;
 
-import chessEngine.ai.ChessAI;
+import chessEngine.ai.*;
+import chessEngine.gameState.*;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.HashMap;
-import java.util.List;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// Engine service for many clients and games. A single selector thread does all socket I/O; requests are
+// queued per connection and run by a fixed pool of search workers (one engine each) in round-robin order
+// across connections. A client that sends faster than it is served stops being read until its backlog
+// drains, so overload turns into TCP backpressure instead of threads or memory.
+//
+// Line protocol, one reply line per request, in request order:
+//   new [fen]             -> game <id>
+//   move <id> <move>      -> ok <id>
+//   go <id> [ms]          -> bestmove <id> <move> <score>   (the move is also played in the game)
+//   fen <id>              -> fen <id> <fen>
+//   close <id>            -> closed <id>
+//   ping                  -> pong
+// Failures reply "error <message>". A go is answered within its time budget, counted from when the
+// request arrived, so time spent queued is taken from the search.
+//
+// A client whose first byte is BinaryProtocol.MAGIC speaks the same requests as length-prefixed frames
+// instead, with packed positions and moves and a request id echoed in every reply. Frames are decoded in
+// place from the connection's direct read buffer into recycled jobs, and replies are encoded straight into
+// its direct write buffer, so the binary path makes no garbage per message outside the search itself.
 public class ChessServer {
 
     public static final int CHESS_PORT = 38519;
 
-    private HashMap<String, Object> params;
+    // Room reserved in a write buffer for any one binary reply
+    private static final int FRAME_SPACE = 4 + BinaryProtocol.MAX_FRAME;
 
-    private ServerSocket serverSocket;
-    private List<Socket> incommingConnections;
-    private List<Socket> outgoingConnections;
+    private final int port;
+    private final long defaultBudgetMs;
+    private final long maxBudgetMs;
+    private final int maxGames;
 
-    private String getString(String pname){
-        return (String) params.get(pname);
+    private final AtomicInteger games = new AtomicInteger();
+
+    private final FairScheduler scheduler;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+
+    // Connections whose interest set the selector thread has to update: new replies or reads to resume
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> pendingResumes = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running;
+
+    public ChessServer(int port, int workers, int hashMbPerWorker, long defaultBudgetMs, long maxBudgetMs, int maxGames) throws IOException {
+
+        this.port = port;
+        this.defaultBudgetMs = defaultBudgetMs;
+        this.maxBudgetMs = maxBudgetMs;
+        this.maxGames = maxGames;
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        scheduler = new FairScheduler(workers, 64, () -> new AdvancedAI(0, hashMbPerWorker), this::handle, this::resumeReading, this::failed);
     }
 
-    private boolean getBoolean(String pname){
-        return (Boolean) params.get(pname);
+    // Workers sized to the machine, 1 second per move by default and at most 30
+    public ChessServer(int port) throws IOException {
+        this(port, Runtime.getRuntime().availableProcessors(), 16, 1000, 30000, 100000);
     }
 
-    private int getInt(String pname){
-        return (Integer) params.get(pname);
+    public int getPort(){
+        return serverChannel.socket().getLocalPort();
     }
 
-    public ChessServer(ChessAI ai){
+    public int getGameCount(){
+        return games.get();
+    }
 
-        params.put("ai_name", "AI-" + (int)(Math.random() * Integer.MAX_VALUE));
-        params.put("ai_acceptAll", true);
-        params.put("ai_engine", ai);
+    public void start(){
+        running = true;
+        Thread thread = new Thread(this::selectLoop, "chess-selector-" + port);
+        thread.start();
+    }
+
+    public void stop(){
+        running = false;
+        selector.wakeup();
+        scheduler.shutdown();
+    }
+
+    private void selectLoop(){
 
         try{
 
-            serverSocket = new ServerSocket(CHESS_PORT);
-            new Thread(() -> scanConnections()).start();
+            while(running){
+
+                selector.select();
+
+                Connection connection;
 
-        }catch(Exception e){
-            System.out.println("Error during server initialization:");
+                while((connection = pendingWrites.poll()) != null){
+                    if(connection.key.isValid()) connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+                }
+
+                while((connection = pendingResumes.poll()) != null){
+                    if(connection.key.isValid()) connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_READ);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+                while(keys.hasNext()){
+
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    try{
+
+                        if(key.isAcceptable()){
+                            accept();
+                            continue;
+                        }
+
+                        if(key.isReadable()) read((Connection) key.attachment());
+                        if(key.isValid() && key.isWritable()) write((Connection) key.attachment());
+
+                    }catch(IOException e){
+                        close((Connection) key.attachment());
+                    }
+                }
+            }
+
+        }catch(IOException e){
+            System.out.println("Error in server selector: (Server stopped)");
             e.printStackTrace();
+        }finally{
+            closeAll();
         }
     }
 
-    public void start(){
+    private void accept() throws IOException {
+
+        SocketChannel channel;
+
+        while((channel = serverChannel.accept()) != null){
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+
+        ByteBuffer buffer = connection.readBuffer;
+
+        int read = connection.channel.read(buffer);
+
+        if(read < 0){
+            close(connection);
+            return;
+        }
+
+        buffer.flip();
+
+        if(connection.mode == Connection.UNKNOWN && buffer.hasRemaining()){
+
+            if((buffer.get(0) & 0xFF) == BinaryProtocol.MAGIC){
+                connection.mode = Connection.BINARY;
+                buffer.get();
+            }else{
+                connection.mode = Connection.TEXT;
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        boolean accepting = connection.mode == Connection.BINARY ? readFrames(connection, now) : readLines(connection, now);
+
+        if(connection.closed) return;
+
+        // Keeps a partial frame for the next read
+        buffer.compact();
+
+        if(!accepting){
+            connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+        }
+    }
+
+    private boolean readLines(Connection connection, long now){
+
+        ByteBuffer buffer = connection.readBuffer;
+        boolean accepting = true;
+
+        // Requests are ASCII, so bytes map straight to chars
+        while(buffer.hasRemaining()){
+
+            char c = (char) (buffer.get() & 0xFF);
+
+            if(c == '\n'){
+
+                String command = connection.line.toString().trim();
+                connection.line.setLength(0);
+
+                if(!command.isEmpty()){
+
+                    Connection.Job job = scheduler.obtain(connection);
+                    job.command = command;
+                    job.receivedAt = now;
+
+                    accepting &= scheduler.submit(connection, job);
+                }
+
+            }else if(c != '\r'){
+
+                if(connection.line.length() >= 4096){
+                    close(connection);
+                    return false;
+                }
+
+                connection.line.append(c);
+            }
+        }
 
+        return accepting;
     }
 
-    public void scanConnections(){
+    // Decodes every complete frame in the read buffer straight into pooled jobs
+    private boolean readFrames(Connection connection, long now){
+
+        ByteBuffer buffer = connection.readBuffer;
+        boolean accepting = true;
+
+        while(buffer.remaining() >= 4){
+
+            int length = buffer.getInt(buffer.position());
+
+            if(length < BinaryProtocol.HEADER || length > BinaryProtocol.MAX_FRAME){
+                close(connection);
+                return false;
+            }
+
+            if(buffer.remaining() < 4 + length) break;
+
+            int end = buffer.position() + 4 + length;
+            int limit = buffer.limit();
+
+            buffer.position(buffer.position() + 4);
+            buffer.limit(end);
+
+            Connection.Job job = scheduler.obtain(connection);
+            job.receivedAt = now;
+            job.type = buffer.get() & 0xFF;
+            job.requestId = buffer.getInt();
+
+            decode(buffer, job);
+
+            buffer.limit(limit);
+            buffer.position(end);
+
+            accepting &= scheduler.submit(connection, job);
+        }
+
+        return accepting;
+    }
+
+    private static void decode(ByteBuffer payload, Connection.Job job){
+
+        switch(job.type){
+
+            case BinaryProtocol.NEW:
+
+                if(payload.hasRemaining()){
+
+                    if(job.position == null) job.position = new BitBoard();
+
+                    job.hasPosition = true;
+
+                    if(!BinaryProtocol.readPosition(payload, job.position)) job.error = BinaryProtocol.BAD_REQUEST;
+                }
+                return;
+
+            case BinaryProtocol.MOVE:
+            case BinaryProtocol.GO:
+
+                if(payload.remaining() < 8){
+                    job.error = BinaryProtocol.BAD_REQUEST;
+                    return;
+                }
+
+                job.gameId = payload.getInt();
+
+                if(job.type == BinaryProtocol.MOVE){
+                    job.move = payload.getInt();
+                }else{
+                    job.budgetMs = payload.getInt();
+                }
+                return;
+
+            case BinaryProtocol.POSITION:
+            case BinaryProtocol.CLOSE:
+
+                if(payload.remaining() < 4){
+                    job.error = BinaryProtocol.BAD_REQUEST;
+                    return;
+                }
+
+                job.gameId = payload.getInt();
+                return;
+
+            case BinaryProtocol.PING:
+                return;
+
+            default:
+                job.error = BinaryProtocol.BAD_REQUEST;
+        }
+    }
+
+    private void write(Connection connection) throws IOException {
+
+        if(!connection.flush()) return;
+
+        connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_WRITE);
+
+        // A reply appended between the flush and clearing OP_WRITE must not be left behind
+        if(connection.hasPendingWrites()) connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    private void close(Connection connection){
+
+        if(connection == null || connection.closed) return;
+
+        connection.closed = true;
+        connection.key.cancel();
 
         try{
+            connection.channel.close();
+        }catch(IOException ignored){}
 
-            /*while(true){
+        // Queued behind whatever is still running, so the connection's games are released by a worker
+        Connection.Job job = scheduler.obtain(connection);
+        job.receivedAt = System.currentTimeMillis();
 
-                serverSocket.accept();
+        scheduler.submit(connection, job);
+    }
 
-                if()
-            }*/
+    private void closeAll(){
 
-        }catch(Exception e){
-            System.out.println("Error during scanning: (Scan ended)");
-            e.printStackTrace();
+        for(SelectionKey key : selector.keys()){
+            if(key.attachment() instanceof Connection) close((Connection) key.attachment());
+        }
+
+        try{
+            serverChannel.close();
+            selector.close();
+        }catch(IOException ignored){}
+    }
+
+    private void reply(Connection connection, String text){
+        connection.send(text);
+        wakeWriter(connection);
+    }
+
+    private void wakeWriter(Connection connection){
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    private void resumeReading(Connection connection){
+        pendingResumes.add(connection);
+        selector.wakeup();
+    }
+
+    // A bug rather than a bad request, so the details stay in the server's log
+    private void failed(Connection connection, Connection.Job job, RuntimeException e){
+
+        logFailure(job, e);
+
+        // Binary jobs catch their own failures, and a text line would corrupt a binary stream
+        if(job.command != null) connection.send("error internal");
+
+        wakeWriter(connection);
+    }
+
+    private static void logFailure(Connection.Job job, RuntimeException e){
+        System.out.println("Error handling request: " + (job.command != null ? job.command : "binary type " + job.type));
+        e.printStackTrace();
+    }
+
+    // Runs on a worker thread; never concurrently for the same connection
+    private void handle(Connection connection, Connection.Job job, AdvancedAI ai){
+
+        if(connection.closed){
+            releaseGames(connection);
+            return;
+        }
+
+        if(job.command == null){
+
+            int error;
+
+            try{
+                error = executeBinary(connection, job, ai);
+            }catch(RuntimeException e){
+                logFailure(job, e);
+                error = BinaryProtocol.INTERNAL_ERROR;
+            }
+
+            if(error != 0){
+                synchronized(connection){
+                    ByteBuffer out = connection.reserve(FRAME_SPACE);
+                    int start = BinaryProtocol.beginFrame(out, BinaryProtocol.ERROR, job.requestId);
+                    out.put((byte) error);
+                    BinaryProtocol.endFrame(out, start);
+                }
+            }
+
+            wakeWriter(connection);
+            return;
+        }
+
+        String[] tokens = job.command.split("\\s+");
+
+        try{
+            reply(connection, execute(connection, tokens, job.receivedAt, ai));
+        }catch(IllegalArgumentException e){
+            reply(connection, "error " + e.getMessage());
+        }
+    }
+
+    // Writes the reply frame for a binary request, or returns the error code to reply with instead
+    private int executeBinary(Connection connection, Connection.Job job, AdvancedAI ai){
+
+        if(job.error != 0) return job.error;
+
+        switch(job.type){
+
+            case BinaryProtocol.PING:
+
+                synchronized(connection){
+                    ByteBuffer out = connection.reserve(FRAME_SPACE);
+                    BinaryProtocol.endFrame(out, BinaryProtocol.beginFrame(out, BinaryProtocol.PONG, job.requestId));
+                }
+                return 0;
+
+            case BinaryProtocol.NEW: {
+
+                if(!reserveGame()) return BinaryProtocol.TOO_MANY_GAMES;
+
+                int id = connection.nextGameId++;
+                connection.games.put(id, job.hasPosition ? new BitBoard(job.position) : ChessBoard.START_POSITION.toBitBoard());
+
+                gameFrame(connection, BinaryProtocol.GAME, job.requestId, id);
+                return 0;
+            }
+
+            case BinaryProtocol.MOVE: {
+
+                BitBoard board = connection.games.get(job.gameId);
+
+                if(board == null) return BinaryProtocol.NO_GAME;
+
+                int move = MoveGenerator.resolve(board, job.move, connection.moves);
+
+                if(move == Move.NONE) return BinaryProtocol.ILLEGAL_MOVE;
+
+                board.makeMove(move);
+
+                gameFrame(connection, BinaryProtocol.OK, job.requestId, job.gameId);
+                return 0;
+            }
+
+            case BinaryProtocol.GO: {
+
+                BitBoard board = connection.games.get(job.gameId);
+
+                if(board == null) return BinaryProtocol.NO_GAME;
+
+                ChessMove best = ai.getAIMove(board.toChessBoard(), limits(job.budgetMs > 0 ? job.budgetMs : defaultBudgetMs, job.receivedAt));
+
+                if(best == null) return BinaryProtocol.NO_LEGAL_MOVES;
+
+                int move = MoveGenerator.resolve(board, best.toMove(), connection.moves);
+                board.makeMove(move);
+
+                synchronized(connection){
+                    ByteBuffer out = connection.reserve(FRAME_SPACE);
+                    int start = BinaryProtocol.beginFrame(out, BinaryProtocol.BEST_MOVE, job.requestId);
+
+                    try{
+                        out.putInt(job.gameId);
+                        out.putInt(BinaryProtocol.wireMove(move));
+                        out.putInt(ai.getLastScore());
+                        BinaryProtocol.endFrame(out, start);
+                    }catch(RuntimeException e){
+                        // Dropped before the lock is released, so the writer never sees half a frame
+                        out.position(start);
+                        throw e;
+                    }
+                }
+                return 0;
+            }
+
+            case BinaryProtocol.POSITION: {
+
+                BitBoard board = connection.games.get(job.gameId);
+
+                if(board == null) return BinaryProtocol.NO_GAME;
+
+                synchronized(connection){
+                    ByteBuffer out = connection.reserve(FRAME_SPACE);
+                    int start = BinaryProtocol.beginFrame(out, BinaryProtocol.POSITION_IS, job.requestId);
+
+                    try{
+                        out.putInt(job.gameId);
+                        BinaryProtocol.writePosition(out, board);
+                        BinaryProtocol.endFrame(out, start);
+                    }catch(RuntimeException e){
+                        out.position(start);
+                        throw e;
+                    }
+                }
+                return 0;
+            }
+
+            case BinaryProtocol.CLOSE:
+
+                if(connection.games.remove(job.gameId) == null) return BinaryProtocol.NO_GAME;
+
+                games.decrementAndGet();
+
+                gameFrame(connection, BinaryProtocol.CLOSED, job.requestId, job.gameId);
+                return 0;
+
+            default:
+                return BinaryProtocol.BAD_REQUEST;
+        }
+    }
+
+    private static void gameFrame(Connection connection, int type, int requestId, int gameId){
+        synchronized(connection){
+            ByteBuffer out = connection.reserve(FRAME_SPACE);
+            int start = BinaryProtocol.beginFrame(out, type, requestId);
+            out.putInt(gameId);
+            BinaryProtocol.endFrame(out, start);
+        }
+    }
+
+    private boolean reserveGame(){
+
+        if(games.incrementAndGet() <= maxGames) return true;
+
+        games.decrementAndGet();
+        return false;
+    }
+
+    // The hard limit is the budget, counted from when the request arrived; the search always finishes depth 1
+    // so there is a move to send
+    private SearchLimits limits(long budgetMs, long receivedAt){
+
+        long remaining = Math.max(1, Math.min(budgetMs, maxBudgetMs) - (System.currentTimeMillis() - receivedAt));
+
+        return SearchLimits.time(remaining / 2, remaining);
+    }
+
+    private String execute(Connection connection, String[] tokens, long receivedAt, AdvancedAI ai){
+
+        switch(tokens[0]){
+
+            case "ping":
+                return "pong";
+
+            case "new": {
+
+                if(!reserveGame()) throw new IllegalArgumentException("Too many games");
+
+                BitBoard board;
+
+                try{
+                    board = tokens.length > 1 ? Fen.parse(join(tokens, 1)) : ChessBoard.START_POSITION.toBitBoard();
+                }catch(IllegalArgumentException e){
+                    games.decrementAndGet();
+                    throw e;
+                }
+
+                int id = connection.nextGameId++;
+                connection.games.put(id, board);
+
+                return "game " + id;
+            }
+
+            case "move": {
+
+                int id = gameId(tokens);
+                BitBoard board = game(connection, id);
+
+                if(tokens.length < 3) throw new IllegalArgumentException("Missing move");
+
+                int move = MoveGenerator.resolve(board, Move.parse(tokens[2]), connection.moves);
+
+                if(move == Move.NONE) throw new IllegalArgumentException("Illegal move: " + tokens[2]);
+
+                board.makeMove(move);
+
+                return "ok " + id;
+            }
+
+            case "go": {
+
+                int id = gameId(tokens);
+                BitBoard board = game(connection, id);
+
+                long budget = tokens.length > 2 ? Long.parseLong(tokens[2]) : defaultBudgetMs;
+
+                ChessMove best = ai.getAIMove(board.toChessBoard(), limits(budget, receivedAt));
+
+                if(best == null) throw new IllegalArgumentException("No legal moves");
+
+                board.makeMove(MoveGenerator.resolve(board, best.toMove(), connection.moves));
+
+                return "bestmove " + id + " " + best + " " + ai.getLastScore();
+            }
+
+            case "fen": {
+                int id = gameId(tokens);
+                return "fen " + id + " " + Fen.toFen(game(connection, id));
+            }
+
+            case "close": {
+
+                int id = gameId(tokens);
+
+                if(connection.games.remove(id) == null) throw new IllegalArgumentException("No game " + id);
+
+                games.decrementAndGet();
+
+                return "closed " + id;
+            }
+
+            default:
+                throw new IllegalArgumentException("Unknown command: " + tokens[0]);
+        }
+    }
+
+    private void releaseGames(Connection connection){
+        games.addAndGet(-connection.games.size());
+        connection.games.clear();
+    }
+
+    private static int gameId(String[] tokens){
+
+        if(tokens.length < 2) throw new IllegalArgumentException("Missing game id");
+
+        try{
+            return Integer.parseInt(tokens[1]);
+        }catch(NumberFormatException e){
+            throw new IllegalArgumentException("Bad game id: " + tokens[1]);
+        }
+    }
+
+    private static BitBoard game(Connection connection, int id){
+
+        BitBoard board = connection.games.get(id);
+
+        if(board == null) throw new IllegalArgumentException("No game " + id);
+
+        return board;
+    }
+
+    private static String join(String[] tokens, int from){
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = from; i < tokens.length; i++){
+            if(sb.length() > 0) sb.append(' ');
+            sb.append(tokens[i]);
         }
+
+        return sb.toString();
     }
 
-    public static void main(String[] args){
+    // Usage: ChessServer [port] [workers]
+    public static void main(String[] args) throws IOException {
+
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : CHESS_PORT;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
 
+        ChessServer server = new ChessServer(port, workers, 16, 1000, 30000, 100000);
+        server.start();
 
+        System.out.println("Chess server listening on port " + server.getPort() + " with " + workers + " workers");
     }
 }
@@ -0,0 +1,109 @@
+package chessEngine.net;
+
+import chessEngine.gameState.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+// One client. The selector thread owns reading; queued requests are run one at a time by the scheduler,
+// so replies leave in request order. Replies are appended to the write buffer under this object's lock
+// and written out by the selector thread.
+class Connection {
+
+    static final int UNKNOWN = 0;
+    static final int TEXT = 1;
+    static final int BINARY = 2;
+
+    final SocketChannel channel;
+    SelectionKey key;
+
+    // Decided by the first byte the client sends; only the selector thread reads or sets it
+    int mode = UNKNOWN;
+
+    final ByteBuffer readBuffer = ByteBuffer.allocateDirect(8192);
+    final StringBuilder line = new StringBuilder();
+
+    // In write mode between flushes; guarded by this
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(4096);
+
+    // Guarded by the scheduler's lock
+    final ArrayDeque<Job> jobs = new ArrayDeque<>();
+    final ArrayDeque<Job> freeJobs = new ArrayDeque<>();
+    boolean queued;
+    boolean running;
+    boolean readPaused;
+
+    volatile boolean closed;
+
+    // Only touched by jobs, which never run concurrently for one connection
+    final GameTable games = new GameTable();
+    int nextGameId = 1;
+    // Scratch for resolving moves against a game
+    final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    Connection(SocketChannel channel){
+        this.channel = channel;
+    }
+
+    synchronized void send(String reply){
+        byte[] bytes = (reply + "\n").getBytes(StandardCharsets.UTF_8);
+        reserve(bytes.length).put(bytes);
+    }
+
+    // Returns the write buffer with room for at least bytes more; callers must hold this object's lock
+    ByteBuffer reserve(int bytes){
+
+        if(writeBuffer.remaining() < bytes){
+
+            // Only a client that stops reading gets here, and it is bounded by its request backlog
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + bytes));
+            writeBuffer.flip();
+            larger.put(writeBuffer);
+            writeBuffer = larger;
+        }
+
+        return writeBuffer;
+    }
+
+    synchronized boolean hasPendingWrites(){
+        return writeBuffer.position() > 0;
+    }
+
+    // Writes as much as the socket takes; returns true when everything has been sent
+    synchronized boolean flush() throws IOException {
+
+        writeBuffer.flip();
+        channel.write(writeBuffer);
+
+        boolean done = !writeBuffer.hasRemaining();
+        writeBuffer.compact();
+
+        return done;
+    }
+
+    // A request and the time it arrived, which its time budget is counted from. Jobs are recycled through
+    // freeJobs, so a steady stream of binary requests allocates nothing.
+    static class Job {
+
+        long receivedAt;
+
+        // Text requests
+        String command;
+
+        // Binary requests
+        int type;
+        int requestId;
+        int gameId;
+        int move;
+        int budgetMs;
+        int error;
+
+        // Position of a binary NEW request, allocated the first time this job carries one
+        BitBoard position;
+        boolean hasPosition;
+    }
+}
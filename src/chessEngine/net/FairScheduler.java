@@ -0,0 +1,142 @@
+package chessEngine.net;
+
+import chessEngine.ai.*;
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+// Runs connection jobs on a fixed set of worker threads. Connections with work wait in one round-robin
+// queue and a worker takes a single job from the head connection before moving it to the back, so a
+// client with a long backlog cannot starve the others. A connection never has two jobs running at once.
+class FairScheduler {
+
+    interface Handler {
+        void run(Connection connection, Connection.Job job, AdvancedAI ai);
+    }
+
+    // Called when a connection's backlog has drained enough to read from it again
+    interface ResumeListener {
+        void resume(Connection connection);
+    }
+
+    // Called when a job throws; replying to the client is up to the listener
+    interface ErrorListener {
+        void failed(Connection connection, Connection.Job job, RuntimeException e);
+    }
+
+    private final ArrayDeque<Connection> ready = new ArrayDeque<>();
+    private final Thread[] workers;
+    private final int maxJobsPerConnection;
+    private final Handler handler;
+    private final ResumeListener resumeListener;
+    private final ErrorListener errorListener;
+
+    private boolean shutdown;
+
+    FairScheduler(int workerCount, int maxJobsPerConnection, Supplier<AdvancedAI> engines, Handler handler, ResumeListener resumeListener, ErrorListener errorListener){
+
+        this.maxJobsPerConnection = maxJobsPerConnection;
+        this.handler = handler;
+        this.resumeListener = resumeListener;
+        this.errorListener = errorListener;
+
+        workers = new Thread[workerCount];
+
+        for(int i = 0; i < workerCount; i++){
+
+            AdvancedAI ai = engines.get();
+
+            workers[i] = new Thread(() -> work(ai), "chess-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    // A cleared job for the connection, recycled if one is free
+    synchronized Connection.Job obtain(Connection connection){
+
+        Connection.Job job = connection.freeJobs.poll();
+
+        if(job == null) job = new Connection.Job();
+
+        job.command = null;
+        job.hasPosition = false;
+        job.error = 0;
+
+        return job;
+    }
+
+    // Returns false once the connection's backlog is full; the caller should stop reading from it
+    synchronized boolean submit(Connection connection, Connection.Job job){
+
+        connection.jobs.add(job);
+
+        if(!connection.queued && !connection.running){
+            connection.queued = true;
+            ready.add(connection);
+            notify();
+        }
+
+        if(connection.jobs.size() < maxJobsPerConnection) return true;
+
+        connection.readPaused = true;
+        return false;
+    }
+
+    synchronized void shutdown(){
+        shutdown = true;
+        notifyAll();
+    }
+
+    private void work(AdvancedAI ai){
+
+        while(true){
+
+            Connection connection;
+            Connection.Job job;
+
+            synchronized(this){
+
+                while(ready.isEmpty() && !shutdown){
+                    try{
+                        wait();
+                    }catch(InterruptedException e){
+                        return;
+                    }
+                }
+
+                if(shutdown) return;
+
+                connection = ready.poll();
+                connection.queued = false;
+                connection.running = true;
+                job = connection.jobs.poll();
+            }
+
+            try{
+                handler.run(connection, job, ai);
+            }catch(RuntimeException e){
+                errorListener.failed(connection, job, e);
+            }
+
+            boolean resume;
+
+            synchronized(this){
+
+                connection.running = false;
+                connection.freeJobs.add(job);
+
+                if(!connection.jobs.isEmpty()){
+                    connection.queued = true;
+                    ready.add(connection);
+                    notify();
+                }
+
+                resume = connection.readPaused && connection.jobs.size() <= maxJobsPerConnection / 2;
+                if(resume) connection.readPaused = false;
+            }
+
+            if(resume) resumeListener.resume(connection);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package chessEngine.net;
+
+import chessEngine.gameState.*;
+
+import java.util.Arrays;
+
+// A connection's games by id, in an open-addressed table keyed by the int itself, so looking a game up for
+// every request boxes nothing. Ids are never 0, which marks a free slot.
+final class GameTable {
+
+    private int[] ids = new int[16];
+    private BitBoard[] boards = new BitBoard[16];
+    private int size;
+
+    int size(){
+        return size;
+    }
+
+    BitBoard get(int id){
+
+        if(id == 0) return null;
+
+        int mask = ids.length - 1;
+
+        for(int i = slot(id, mask); ids[i] != 0; i = i + 1 & mask){
+            if(ids[i] == id) return boards[i];
+        }
+
+        return null;
+    }
+
+    void put(int id, BitBoard board){
+
+        if(id == 0) throw new IllegalArgumentException("Game id 0");
+
+        // Kept at most half full, so probes stay short
+        if((size + 1) * 2 > ids.length) grow();
+
+        int mask = ids.length - 1;
+        int i = slot(id, mask);
+
+        for(; ids[i] != 0; i = i + 1 & mask){
+            if(ids[i] == id){
+                boards[i] = board;
+                return;
+            }
+        }
+
+        ids[i] = id;
+        boards[i] = board;
+        size++;
+    }
+
+    BitBoard remove(int id){
+
+        if(id == 0) return null;
+
+        int mask = ids.length - 1;
+        int i = slot(id, mask);
+
+        while(ids[i] != id){
+            if(ids[i] == 0) return null;
+            i = i + 1 & mask;
+        }
+
+        BitBoard removed = boards[i];
+
+        // Shift later entries of the run back, so no probe meets a gap before its own entry
+        for(int j = i + 1 & mask; ids[j] != 0; j = j + 1 & mask){
+
+            int home = slot(ids[j], mask);
+
+            if((j - home & mask) >= (j - i & mask)){
+                ids[i] = ids[j];
+                boards[i] = boards[j];
+                i = j;
+            }
+        }
+
+        ids[i] = 0;
+        boards[i] = null;
+        size--;
+
+        return removed;
+    }
+
+    void clear(){
+        Arrays.fill(ids, 0);
+        Arrays.fill(boards, null);
+        size = 0;
+    }
+
+    private void grow(){
+
+        int[] oldIds = ids;
+        BitBoard[] oldBoards = boards;
+
+        ids = new int[oldIds.length * 2];
+        boards = new BitBoard[oldIds.length * 2];
+        size = 0;
+
+        for(int i = 0; i < oldIds.length; i++){
+            if(oldIds[i] != 0) put(oldIds[i], oldBoards[i]);
+        }
+    }
+
+    // Ids are handed out in sequence, so a multiplicative hash spreads neighbours over the table
+    private static int slot(int id, int mask){
+        int hash = id * 0x9E3779B9;
+        return (hash ^ hash >>> 16) & mask;
+    }
+}
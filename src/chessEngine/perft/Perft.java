@@ -0,0 +1,226 @@
+package chessEngine.perft;
+
+import chessEngine.gameState.*;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Counts the leaf nodes of the legal move tree to a fixed depth. Subtrees near the root are split into
+// fork/join tasks, each with its own board copy; below SPLIT_DEPTH a task walks its subtree with make/unmake.
+// Counting goes either through BitBoard and MoveGenerator, or through ChessBoard's getValidMoves/applyMove,
+// so the two move generators can be checked against each other and the published numbers.
+public class Perft {
+
+    // Subtrees with fewer plies than this are counted sequentially by the task that reaches them
+    private static final int SPLIT_DEPTH = 3;
+
+    private final ForkJoinPool pool;
+    private final PerftCache cache;
+
+    public Perft(){
+        this(ForkJoinPool.commonPool(), null);
+    }
+
+    // cache may be null; it is only used on the BitBoard path
+    public Perft(ForkJoinPool pool, PerftCache cache){
+        this.pool = pool;
+        this.cache = cache;
+    }
+
+    public long perft(BitBoard board, int depth){
+        return pool.invoke(new BitBoardTask(new BitBoard(board), Move.NONE, depth));
+    }
+
+    public long perft(ChessBoard board, int depth){
+        return pool.invoke(new ChessBoardTask(board, depth));
+    }
+
+    // Leaf count under each root move, in generation order
+    public Map<Integer, Long> divide(BitBoard board, int depth){
+
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+
+        if(depth < 1) return counts;
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(board, moves, 0);
+
+        BitBoardTask[] tasks = new BitBoardTask[count];
+
+        for(int i = 0; i < count; i++){
+            tasks[i] = new BitBoardTask(new BitBoard(board), moves[i], depth - 1);
+        }
+
+        pool.invoke(new RecursiveTask<Void>(){
+            @Override
+            protected Void compute(){
+                invokeAll(tasks);
+                return null;
+            }
+        });
+
+        for(int i = 0; i < count; i++){
+            counts.put(moves[i], tasks[i].join());
+        }
+
+        return counts;
+    }
+
+    private class BitBoardTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BitBoard board;
+        private final int move;
+        private final int depth;
+
+        // Plays move (if any) on the task's own board, then counts depth plies below it
+        BitBoardTask(BitBoard board, int move, int depth){
+            this.board = board;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute(){
+
+            if(move != Move.NONE) board.makeMove(move);
+
+            if(depth < SPLIT_DEPTH){
+                return count(board, depth, new int[depth + 1][MoveGenerator.MAX_MOVES]);
+            }
+
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int count = MoveGenerator.generate(board, moves, 0);
+
+            BitBoardTask[] tasks = new BitBoardTask[count];
+
+            for(int i = 0; i < count; i++){
+                tasks[i] = new BitBoardTask(new BitBoard(board), moves[i], depth - 1);
+            }
+
+            invokeAll(tasks);
+
+            long nodes = 0;
+
+            for(BitBoardTask task : tasks){
+                nodes += task.join();
+            }
+
+            return nodes;
+        }
+
+        private long count(BitBoard board, int depth, int[][] moves){
+
+            if(depth == 0) return 1;
+
+            if(cache != null && depth > 1){
+                long cached = cache.get(board.key, depth);
+                if(cached >= 0) return cached;
+            }
+
+            int count = MoveGenerator.generate(board, moves[depth], 0);
+
+            // The last ply only needs the number of legal moves
+            if(depth == 1) return count;
+
+            long nodes = 0;
+
+            for(int i = 0; i < count; i++){
+                board.makeMove(moves[depth][i]);
+                nodes += count(board, depth - 1, moves);
+                board.unmakeMove();
+            }
+
+            if(cache != null) cache.put(board.key, depth, nodes);
+
+            return nodes;
+        }
+    }
+
+    private class ChessBoardTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ChessBoard board;
+        private final int depth;
+
+        ChessBoardTask(ChessBoard board, int depth){
+            this.board = board;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute(){
+
+            if(depth < SPLIT_DEPTH) return count(board, depth);
+
+            ChessMove[] moves = board.getValidMoves();
+            ChessBoardTask[] tasks = new ChessBoardTask[moves.length];
+
+            for(int i = 0; i < moves.length; i++){
+                tasks[i] = new ChessBoardTask(board.applyMove(moves[i]), depth - 1);
+            }
+
+            invokeAll(tasks);
+
+            long nodes = 0;
+
+            for(ChessBoardTask task : tasks){
+                nodes += task.join();
+            }
+
+            return nodes;
+        }
+
+        private long count(ChessBoard board, int depth){
+
+            if(depth == 0) return 1;
+
+            ChessMove[] moves = board.getValidMoves();
+
+            if(depth == 1) return moves.length;
+
+            long nodes = 0;
+
+            for(ChessMove move : moves){
+                nodes += count(board.applyMove(move), depth - 1);
+            }
+
+            return nodes;
+        }
+    }
+
+    // Usage: Perft <depth> [fen]   prints the divide for the position, the total and the speed
+    public static void main(String[] args){
+
+        if(args.length < 1){
+            System.out.println("Usage: Perft <depth> [fen]");
+            return;
+        }
+
+        int depth = Integer.parseInt(args[0]);
+        String fen = args.length > 1 ? String.join(" ", Arrays.copyOfRange(args, 1, args.length)) : PerftSuite.START_FEN;
+
+        BitBoard board = BitBoard.fromFen(fen);
+
+        long start = System.nanoTime();
+        Map<Integer, Long> divide = new Perft().divide(board, depth);
+        long elapsed = System.nanoTime() - start;
+
+        long total = 0;
+
+        for(Map.Entry<Integer, Long> entry : divide.entrySet()){
+            System.out.println(Move.toString(entry.getKey()) + ": " + entry.getValue());
+            total += entry.getValue();
+        }
+
+        System.out.println();
+        System.out.println("Moves: " + divide.size());
+        System.out.println("Nodes: " + total);
+        System.out.printf("Time: %dms (%.0f nodes/s)%n", elapsed / 1000000, total * 1e9 / Math.max(1, elapsed));
+    }
+}
@@ -0,0 +1,43 @@
+package chessEngine.perft;
+
+// Subtree counts keyed by (Zobrist key, depth). Entries are stored as (check ^ count, count) pairs so that
+// several threads can read and write without locks: a torn entry no longer verifies and is just a miss.
+public class PerftCache {
+
+    private final long[] table;
+    private final int mask;
+
+    public PerftCache(int sizeMb){
+
+        long entries = Long.highestOneBit(Math.max(1, sizeMb) * 1024L * 1024L / 16);
+        entries = Math.min(entries, 1 << 29);
+
+        table = new long[(int) entries * 2];
+        mask = (int) entries - 1;
+    }
+
+    // Returns the stored count, or -1 if the subtree is not in the cache
+    public long get(long key, int depth){
+
+        long check = check(key, depth);
+        int index = ((int) check & mask) * 2;
+
+        long count = table[index + 1];
+
+        return (table[index] ^ count) == check ? count : -1;
+    }
+
+    public void put(long key, int depth, long count){
+
+        long check = check(key, depth);
+        int index = ((int) check & mask) * 2;
+
+        table[index] = check ^ count;
+        table[index + 1] = count;
+    }
+
+    // The same position at different depths must land in different entries
+    private static long check(long key, int depth){
+        return key ^ (depth * 0x9E3779B97F4A7C15L);
+    }
+}
@@ -0,0 +1,81 @@
+package chessEngine.perft;
+
+import chessEngine.gameState.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+// The standard perft positions with their published node counts. Run as a program it checks every
+// position up to a node budget and reports the speed, which doubles as the move generator benchmark.
+//
+// Usage: PerftSuite [--nodes N] [--chessboard] [--cache MB] [--threads N]
+public class PerftSuite {
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    public static final String[] FENS = {
+            START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    };
+
+    // EXPECTED[i][d - 1] is the node count of FENS[i] at depth d
+    public static final long[][] EXPECTED = {
+            {20, 400, 8902, 197281, 4865609, 119060324},
+            {48, 2039, 97862, 4085603, 193690690},
+            {14, 191, 2812, 43238, 674624, 11030083},
+            {6, 264, 9467, 422333, 15833292},
+            {44, 1486, 62379, 2103487, 89941194},
+            {46, 2079, 89890, 3894594, 164075551}
+    };
+
+    public static void main(String[] args){
+
+        long maxNodes = 5000000;
+        boolean chessBoard = false;
+        int cacheMb = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "--nodes": maxNodes = Long.parseLong(args[++i]); break;
+                case "--chessboard": chessBoard = true; break;
+                case "--cache": cacheMb = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Perft perft = new Perft(new ForkJoinPool(threads), cacheMb > 0 ? new PerftCache(cacheMb) : null);
+
+        long totalNodes = 0;
+        long totalTime = 0;
+        int failures = 0;
+
+        for(int i = 0; i < FENS.length; i++){
+
+            BitBoard board = BitBoard.fromFen(FENS[i]);
+
+            for(int depth = 1; depth <= EXPECTED[i].length && EXPECTED[i][depth - 1] <= maxNodes; depth++){
+
+                long start = System.nanoTime();
+                long nodes = chessBoard ? perft.perft(board.toChessBoard(), depth) : perft.perft(board, depth);
+                long elapsed = System.nanoTime() - start;
+
+                boolean ok = nodes == EXPECTED[i][depth - 1];
+                if(!ok) failures++;
+
+                totalNodes += nodes;
+                totalTime += elapsed;
+
+                System.out.printf("%s position %d depth %d: %d (expected %d) %dms%n", ok ? "ok  " : "FAIL", i + 1, depth, nodes, EXPECTED[i][depth - 1], elapsed / 1000000);
+            }
+        }
+
+        System.out.printf("%n%d failures, %d nodes in %dms (%.0f nodes/s)%n", failures, totalNodes, totalTime / 1000000, totalNodes * 1e9 / Math.max(1, totalTime));
+
+        if(failures > 0) System.exit(1);
+    }
+}
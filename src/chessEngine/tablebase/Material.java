@@ -0,0 +1,362 @@
+package chessEngine.tablebase;
+
+import chessEngine.gameState.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A set of pieces, such as "KRPvKR", and the index of its tablebase. Every position is stored with the
+// pieces named in the canonical orientation (the stronger side as white); positions of the other
+// orientation are colour-flipped first. Slots hold the white king, the other white pieces, the black
+// king and the other black pieces, identical pieces next to each other. The index is
+//
+//   side to move, white king square, then one 6-bit square for every other slot
+//
+// with the board mirrored so the white king is on files a-d, and without pawns also on ranks 1-4.
+// Identical pieces are stored in ascending square order, so each position has exactly one index.
+public final class Material {
+
+    private static final String LETTERS = "PNBRQK";
+    private static final int[] VALUES = {1, 3, 3, 5, 9, 0};
+
+    public final String name;
+    // Piece code of each slot; slot 0 is the white king
+    final int[] codes;
+    final boolean pawns;
+    final int kingSquares;
+    public final long size;
+
+    private Material(String name, int[] codes){
+
+        this.name = name;
+        this.codes = codes;
+
+        boolean hasPawns = false;
+
+        for(int code : codes){
+            if(BitBoard.pieceType(code) == BitBoard.PAWN) hasPawns = true;
+        }
+
+        pawns = hasPawns;
+        kingSquares = pawns ? 32 : 16;
+        size = 2L * kingSquares << 6 * (codes.length - 1);
+    }
+
+    // Parses names like "KQvK" or "KRPvKR", in either orientation
+    public static Material of(String name){
+
+        int v = name.indexOf('v');
+
+        if(v < 0) throw new IllegalArgumentException("Bad material: " + name);
+
+        int[] white = counts(name.substring(0, v));
+        int[] black = counts(name.substring(v + 1));
+
+        return canonical(white, black);
+    }
+
+    // Material of the pieces on a board
+    public static Material of(BitBoard board){
+
+        int[] white = new int[6];
+        int[] black = new int[6];
+
+        for(int type = 0; type < 6; type++){
+            white[type] = Long.bitCount(board.pieces(BitBoard.WHITE, type));
+            black[type] = Long.bitCount(board.pieces(BitBoard.BLACK, type));
+        }
+
+        return canonical(white, black);
+    }
+
+    // Piece counts as 4-bit fields, white's codes in the low half; tells materials apart without allocating
+    public static long signature(BitBoard board){
+
+        long signature = 0;
+
+        for(int code = 0; code < 12; code++){
+            signature |= (long) Long.bitCount(board.pieces[code]) << 4 * code;
+        }
+
+        return signature;
+    }
+
+    long signature(boolean flipped){
+
+        long signature = 0;
+
+        for(int code : codes){
+            int stored = flipped ? flip(code) : code;
+            signature += 1L << 4 * stored;
+        }
+
+        return signature;
+    }
+
+    public int pieceCount(){
+        return codes.length;
+    }
+
+    // Materials one capture or one promotion away from this one, in canonical orientation
+    public List<Material> successors(){
+
+        List<Material> successors = new ArrayList<>();
+
+        int[] white = new int[6];
+        int[] black = new int[6];
+
+        for(int code : codes){
+            if(code < 6){
+                white[code]++;
+            }else{
+                black[code - 6]++;
+            }
+        }
+
+        for(int side = 0; side < 2; side++){
+
+            int[] own = side == 0 ? white : black;
+
+            for(int type = 0; type < 5; type++){
+
+                if(own[type] == 0) continue;
+
+                own[type]--;
+                add(successors, canonical(white, black));
+
+                if(type == BitBoard.PAWN){
+                    for(int promotion = BitBoard.KNIGHT; promotion <= BitBoard.QUEEN; promotion++){
+                        own[promotion]++;
+                        add(successors, canonical(white, black));
+                        own[promotion]--;
+                    }
+                }
+
+                own[type]++;
+            }
+        }
+
+        return successors;
+    }
+
+    // Every material with kings and up to pieces men in total, weakest first
+    public static List<Material> all(int pieces){
+
+        List<Material> all = new ArrayList<>();
+
+        int[] white = new int[6];
+        int[] black = new int[6];
+
+        white[BitBoard.KING] = 1;
+        black[BitBoard.KING] = 1;
+
+        for(int count = 2; count <= pieces; count++){
+            enumerate(all, white, black, count - 2, 0);
+        }
+
+        return all;
+    }
+
+    private static void enumerate(List<Material> all, int[] white, int[] black, int left, int slot){
+
+        if(left == 0){
+            add(all, canonical(white, black));
+            return;
+        }
+
+        // Slots 0-4 are white piece types, 5-9 black ones; non-decreasing so each multiset comes up once
+        for(int s = slot; s < 10; s++){
+
+            int[] side = s < 5 ? white : black;
+
+            side[s % 5]++;
+            enumerate(all, white, black, left - 1, s);
+            side[s % 5]--;
+        }
+    }
+
+    private static void add(List<Material> list, Material material){
+        for(Material m : list){
+            if(m.name.equals(material.name)) return;
+        }
+        list.add(material);
+    }
+
+    private static int[] counts(String side){
+
+        int[] counts = new int[6];
+
+        for(int i = 0; i < side.length(); i++){
+
+            int type = LETTERS.indexOf(Character.toUpperCase(side.charAt(i)));
+
+            if(type < 0) throw new IllegalArgumentException("Bad material: " + side);
+
+            counts[type]++;
+        }
+
+        if(counts[BitBoard.KING] != 1) throw new IllegalArgumentException("Each side needs one king: " + side);
+
+        return counts;
+    }
+
+    private static Material canonical(int[] white, int[] black){
+
+        String whiteName = sideName(white);
+        String blackName = sideName(black);
+
+        if(stronger(black, white, blackName, whiteName)){
+            return new Material(blackName + "v" + whiteName, codes(black, white));
+        }
+
+        return new Material(whiteName + "v" + blackName, codes(white, black));
+    }
+
+    private static boolean stronger(int[] a, int[] b, String aName, String bName){
+
+        int aValue = 0, bValue = 0;
+
+        for(int type = 0; type < 6; type++){
+            aValue += a[type] * VALUES[type];
+            bValue += b[type] * VALUES[type];
+        }
+
+        if(aValue != bValue) return aValue > bValue;
+        if(aName.length() != bName.length()) return aName.length() > bName.length();
+
+        return aName.compareTo(bName) > 0;
+    }
+
+    private static String sideName(int[] counts){
+
+        StringBuilder sb = new StringBuilder("K");
+
+        for(int type = BitBoard.QUEEN; type >= BitBoard.PAWN; type--){
+            for(int i = 0; i < counts[type]; i++){
+                sb.append(LETTERS.charAt(type));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static int[] codes(int[] white, int[] black){
+
+        int[] codes = new int[Arrays.stream(white).sum() + Arrays.stream(black).sum()];
+        int n = 0;
+
+        for(int color = 0; color < 2; color++){
+
+            int[] counts = color == 0 ? white : black;
+
+            codes[n++] = BitBoard.pieceCode(color, BitBoard.KING);
+
+            for(int type = 0; type < 5; type++){
+                for(int i = 0; i < counts[type]; i++){
+                    codes[n++] = BitBoard.pieceCode(color, type);
+                }
+            }
+        }
+
+        return codes;
+    }
+
+    static int flip(int code){
+        return code < 6 ? code + 6 : code - 6;
+    }
+
+    // Index of a position given by its slot squares; the squares are put in canonical form in place.
+    // Returns -1 if identical pieces share a square.
+    long index(int side, int[] squares){
+
+        int whiteKing = squares[0];
+        int mirror = 0;
+
+        if(BitBoard.file(whiteKing) > 3) mirror ^= 7;
+        if(!pawns && BitBoard.rank(whiteKing ^ mirror) > 3) mirror ^= 56;
+
+        for(int i = 0; i < codes.length; i++){
+            squares[i] ^= mirror;
+        }
+
+        // Sort runs of identical pieces
+        for(int i = 1; i < codes.length; i++){
+            for(int j = i; j > 1 && codes[j] == codes[j - 1] && squares[j] < squares[j - 1]; j--){
+                int t = squares[j];
+                squares[j] = squares[j - 1];
+                squares[j - 1] = t;
+            }
+        }
+
+        long index = side * kingSquares + BitBoard.rank(squares[0]) * 4 + BitBoard.file(squares[0]);
+
+        for(int i = 1; i < codes.length; i++){
+
+            if(codes[i] == codes[i - 1] && squares[i] == squares[i - 1]) return -1;
+
+            index = index << 6 | squares[i];
+        }
+
+        return index;
+    }
+
+    // Index of a board holding this material, colour-flipped first if flipped; squares is scratch space with
+    // room for at least pieceCount() entries
+    long index(BitBoard board, boolean flipped, int[] squares){
+
+        int i = 0;
+
+        while(i < codes.length){
+
+            int code = codes[i];
+            long pieces = board.pieces[flipped ? flip(code) : code];
+
+            while(pieces != 0){
+                int sq = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                squares[i++] = flipped ? sq ^ 56 : sq;
+            }
+        }
+
+        return index(flipped ? board.sideToMove ^ 1 : board.sideToMove, squares);
+    }
+
+    // Inverse of index(): fills squares and returns the side to move
+    int decode(long index, int[] squares){
+
+        for(int i = codes.length - 1; i > 0; i--){
+            squares[i] = (int) (index & 63);
+            index >>>= 6;
+        }
+
+        int king = (int) (index % kingSquares);
+        squares[0] = BitBoard.square(king & 3, king >>> 2);
+
+        return (int) (index / kingSquares);
+    }
+
+    // Whether decode(index) is a position index() could have produced: distinct squares, no pawns on the
+    // first or last rank, identical pieces in ascending order
+    boolean isCanonical(int[] squares){
+
+        long seen = 0;
+
+        for(int i = 0; i < codes.length; i++){
+
+            int sq = squares[i];
+
+            if((seen & 1L << sq) != 0) return false;
+            seen |= 1L << sq;
+
+            if(BitBoard.pieceType(codes[i]) == BitBoard.PAWN && (BitBoard.rank(sq) == 0 || BitBoard.rank(sq) == 7)) return false;
+            if(i > 1 && codes[i] == codes[i - 1] && sq < squares[i - 1]) return false;
+        }
+
+        return true;
+    }
+
+    public String toString(){
+        return name;
+    }
+}
@@ -0,0 +1,415 @@
+package chessEngine.tablebase;
+
+import chessEngine.gameState.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Builds tablebases by retrograde analysis. Every legal position of a material is first classified by its
+// moves: mates and stalemates are decided at once, captures and promotions are looked up in the smaller
+// tables (generated first), and the remaining moves are counted. Decided positions are then processed in
+// order of distance to mate: a lost position makes all its predecessors won one ply later, and a won one
+// makes a predecessor lost once every move of the predecessor is known to lose. Whatever is never decided
+// is a draw. Predecessors come from un-moving pieces, so each position is visited a bounded number of times.
+//
+// Memory is 4 bytes per index: a 4-piece table with pawns needs about 70MB, a 5-piece one several GB.
+// En-passant rights created by a double push are ignored, like castling.
+public class TablebaseGenerator {
+
+    // Generation states; PENDING ones wait in the bucket of their distance to mate
+    private static final byte UNKNOWN = 0;
+    private static final byte WIN = 1;
+    private static final byte LOSS = 2;
+    private static final byte DRAW = 3;
+    private static final byte INVALID = 4;
+    private static final byte PENDING_WIN = 5;
+    private static final byte PENDING_LOSS = 6;
+
+    // Set on undecided positions with a capture or promotion that draws
+    private static final byte DRAW_EXIT = 8;
+    private static final byte STATE_MASK = 7;
+
+    private final Path directory;
+
+    public TablebaseGenerator(Path directory){
+        this.directory = directory;
+    }
+
+    // Generates the table and, first, every table it converts into; existing tables are kept.
+    // Returns the materials generated.
+    public List<Material> generate(Material material) throws IOException {
+
+        List<Material> generated = new ArrayList<>();
+        generate(material, generated);
+        return generated;
+    }
+
+    private void generate(Material material, List<Material> generated) throws IOException {
+
+        if(Files.exists(directory.resolve(material.name + Tablebases.WDL_SUFFIX))
+                && Files.exists(directory.resolve(material.name + Tablebases.DTM_SUFFIX))) return;
+
+        for(Material successor : material.successors()){
+            generate(successor, generated);
+        }
+
+        try(Tablebases successors = new Tablebases(directory, 256)){
+            new Generation(material, successors).run();
+        }
+
+        generated.add(material);
+    }
+
+    private final class Generation {
+
+        private final Material material;
+        private final Tablebases successors;
+        private final int n;
+
+        private final byte[] state;
+        // Distance to mate of decided and pending positions; while a position is undecided, the longest
+        // loss through a capture or promotion
+        private final short[] dtm;
+        // Moves within this material not yet known to lose
+        private final byte[] remaining;
+
+        private final List<int[]> buckets = new ArrayList<>();
+        private final List<Integer> bucketSizes = new ArrayList<>();
+
+        private final BitBoard board = new BitBoard();
+        private final int[] squares;
+        private final int[] scratch;
+        private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+        Generation(Material material, Tablebases successors){
+
+            if(material.size > Integer.MAX_VALUE) throw new IllegalArgumentException("Table too large: " + material);
+
+            this.material = material;
+            this.successors = successors;
+
+            n = material.pieceCount();
+
+            int size = (int) material.size;
+
+            state = new byte[size];
+            dtm = new short[size];
+            remaining = new byte[size];
+
+            squares = new int[n];
+            scratch = new int[n];
+        }
+
+        void run() throws IOException {
+
+            for(int index = 0; index < state.length; index++){
+                classify(index);
+            }
+
+            for(int ply = 0; ply < buckets.size(); ply++){
+
+                int[] bucket = buckets.get(ply);
+
+                // Buckets only grow at ply + 1 and beyond while this one is processed
+                for(int i = 0; i < bucketSizes.get(ply); i++){
+
+                    int index = bucket[i];
+                    int current = state[index] & STATE_MASK;
+
+                    if(dtm[index] != ply) continue;
+
+                    if(current == PENDING_WIN){
+                        state[index] = WIN;
+                        retract(index, ply, false);
+                    }else if(current == PENDING_LOSS){
+                        state[index] = LOSS;
+                        retract(index, ply, true);
+                    }
+                }
+
+                buckets.set(ply, null);
+            }
+
+            write();
+        }
+
+        private int setUp(int index){
+
+            int side = material.decode(index, squares);
+
+            board.clear();
+
+            for(int i = 0; i < n; i++){
+                board.put(material.codes[i], squares[i]);
+            }
+
+            board.sideToMove = side;
+
+            return side;
+        }
+
+        private void classify(int index){
+
+            material.decode(index, squares);
+
+            if(!material.isCanonical(squares)){
+                state[index] = INVALID;
+                return;
+            }
+
+            int side = setUp(index);
+
+            if(board.isInCheck(side ^ 1)){
+                state[index] = INVALID;
+                return;
+            }
+
+            int count = MoveGenerator.generate(board, moves, 0);
+
+            if(count == 0){
+
+                if(board.isInCheck(side)){
+                    decide(index, PENDING_LOSS, 0);
+                }else{
+                    state[index] = DRAW;
+                }
+                return;
+            }
+
+            int quiet = 0;
+            int winExit = Integer.MAX_VALUE;
+            int lossExit = 0;
+            boolean drawExit = false;
+
+            for(int i = 0; i < count; i++){
+
+                int move = moves[i];
+
+                if(!Move.isCapture(move) && !Move.isPromotion(move)){
+                    quiet++;
+                    continue;
+                }
+
+                board.makeMove(move);
+                int wdl = successors.probeWdl(board, scratch);
+                int distance = successors.probeDtm(board, scratch);
+                board.unmakeMove();
+
+                if(wdl == Tablebases.UNKNOWN) throw new IllegalStateException("Missing table after " + Move.toString(move) + " in " + Fen.toFen(board));
+
+                if(wdl == Tablebases.LOSS){
+                    winExit = Math.min(winExit, distance + 1);
+                }else if(wdl == Tablebases.WIN){
+                    lossExit = Math.max(lossExit, distance + 1);
+                }else{
+                    drawExit = true;
+                }
+            }
+
+            remaining[index] = (byte) quiet;
+            dtm[index] = (short) lossExit;
+
+            if(drawExit) state[index] = DRAW_EXIT;
+
+            if(winExit != Integer.MAX_VALUE){
+                decide(index, PENDING_WIN, winExit);
+            }else if(quiet == 0){
+                if(drawExit){
+                    state[index] = DRAW;
+                }else{
+                    decide(index, PENDING_LOSS, lossExit);
+                }
+            }
+        }
+
+        private void decide(int index, byte pending, int distance){
+
+            state[index] = pending;
+            dtm[index] = (short) distance;
+
+            while(buckets.size() <= distance){
+                buckets.add(new int[1024]);
+                bucketSizes.add(0);
+            }
+
+            int size = bucketSizes.get(distance);
+            int[] bucket = buckets.get(distance);
+
+            if(size == bucket.length){
+                bucket = Arrays.copyOf(bucket, size * 2);
+                buckets.set(distance, bucket);
+            }
+
+            bucket[size] = index;
+            bucketSizes.set(distance, size + 1);
+        }
+
+        // Visits every position one move before this one, within the same material
+        private void retract(int index, int ply, boolean lost){
+
+            int side = setUp(index);
+            int mover = side ^ 1;
+            long empty = ~board.occupied;
+
+            for(int i = 0; i < n; i++){
+
+                int code = material.codes[i];
+
+                if(BitBoard.pieceColor(code) != mover) continue;
+
+                int sq = squares[i];
+                long from;
+
+                switch(BitBoard.pieceType(code)){
+                    case BitBoard.KING: from = Attacks.KING[sq]; break;
+                    case BitBoard.KNIGHT: from = Attacks.KNIGHT[sq]; break;
+                    case BitBoard.BISHOP: from = Attacks.bishop(sq, board.occupied); break;
+                    case BitBoard.ROOK: from = Attacks.rook(sq, board.occupied); break;
+                    case BitBoard.QUEEN: from = Attacks.queen(sq, board.occupied); break;
+                    default: from = pawnOrigins(sq, mover, empty);
+                }
+
+                from &= empty;
+
+                while(from != 0){
+
+                    int origin = Long.numberOfTrailingZeros(from);
+                    from &= from - 1;
+
+                    board.remove(sq);
+                    board.put(code, origin);
+
+                    // The side that is to move after the move must not have been left in check before it
+                    if(!board.isInCheck(side)){
+
+                        System.arraycopy(squares, 0, scratch, 0, n);
+                        scratch[i] = origin;
+
+                        int predecessor = (int) material.index(mover, scratch);
+
+                        if(lost){
+                            wins(predecessor, ply + 1);
+                        }else{
+                            losesOneMore(predecessor, ply + 1);
+                        }
+                    }
+
+                    board.remove(origin);
+                    board.put(code, sq);
+                }
+            }
+        }
+
+        private long pawnOrigins(int sq, int color, long empty){
+
+            int back = color == BitBoard.WHITE ? -8 : 8;
+            int rank = BitBoard.rank(color == BitBoard.WHITE ? sq : sq ^ 56);
+
+            if(rank < 2) return 0;
+
+            long origins = 1L << sq + back;
+
+            if(rank == 3 && (empty & origins) != 0) origins |= 1L << sq + 2 * back;
+
+            return origins;
+        }
+
+        private void wins(int index, int distance){
+
+            int current = state[index] & STATE_MASK;
+
+            if(current == UNKNOWN || current == PENDING_WIN && dtm[index] > distance){
+                decide(index, PENDING_WIN, distance);
+            }
+        }
+
+        private void losesOneMore(int index, int distance){
+
+            if((state[index] & STATE_MASK) != UNKNOWN) return;
+
+            int left = (remaining[index] & 0xFF) - 1;
+            remaining[index] = (byte) left;
+
+            if(left == 0 && (state[index] & DRAW_EXIT) == 0){
+                decide(index, PENDING_LOSS, Math.max(distance, dtm[index]));
+            }
+        }
+
+        private void write() throws IOException {
+
+            byte[] wdl = new byte[(state.length + 3) / 4];
+            byte[] distances = new byte[state.length];
+
+            for(int index = 0; index < state.length; index++){
+
+                int value;
+
+                switch(state[index] & STATE_MASK){
+                    case WIN: value = Tablebases.WIN; break;
+                    case LOSS: value = Tablebases.LOSS; break;
+                    case INVALID: value = Tablebases.INVALID; break;
+                    default: value = Tablebases.DRAW;
+                }
+
+                wdl[index >>> 2] |= value << (index & 3) * 2;
+
+                if(value == Tablebases.WIN || value == Tablebases.LOSS) distances[index] = (byte) Math.min(255, dtm[index]);
+            }
+
+            // Written under temporary names so a half-written table is never picked up
+            writeFile(material.name + Tablebases.DTM_SUFFIX, distances);
+            writeFile(material.name + Tablebases.WDL_SUFFIX, wdl);
+        }
+
+        private void writeFile(String name, byte[] data) throws IOException {
+
+            Path temporary = directory.resolve(name + ".tmp");
+
+            try(OutputStream out = Files.newOutputStream(temporary)){
+                out.write(data);
+            }
+
+            Files.move(temporary, directory.resolve(name), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Usage: TablebaseGenerator <directory> <material>... | --all <pieces>
+    public static void main(String[] args) throws IOException {
+
+        if(args.length < 2){
+            System.out.println("Usage: TablebaseGenerator <directory> <material>... | --all <pieces>");
+            return;
+        }
+
+        Path directory = Paths.get(args[0]);
+        Files.createDirectories(directory);
+
+        List<Material> materials = new ArrayList<>();
+
+        if(args[1].equals("--all")){
+            materials.addAll(Material.all(Integer.parseInt(args[2])));
+        }else{
+            for(int i = 1; i < args.length; i++){
+                materials.add(Material.of(args[i]));
+            }
+        }
+
+        TablebaseGenerator generator = new TablebaseGenerator(directory);
+
+        for(Material material : materials){
+
+            long start = System.currentTimeMillis();
+            List<Material> generated = generator.generate(material);
+
+            if(!generated.isEmpty()){
+                System.out.println(generated + " in " + (System.currentTimeMillis() - start) + "ms");
+            }
+        }
+    }
+}
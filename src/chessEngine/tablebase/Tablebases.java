@@ -0,0 +1,298 @@
+package chessEngine.tablebase;
+
+import chessEngine.gameState.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Probes the tables TablebaseGenerator wrote to a directory. Each material has two files, indexed as
+// described in Material:
+//
+//   <material>.tbw   win/draw/loss for the side to move, 2 bits per position (DRAW, WIN, LOSS, or 3 for
+//                    positions that cannot occur)
+//   <material>.tbm   plies to mate for won and lost positions, one byte each, 255 meaning 255 or more
+//
+// Files are memory-mapped in segments on demand, and only the most recently used segments stay mapped,
+// so the address space used is bounded however many tables there are. Probes from many search threads
+// only take a lock to map a segment. Tables know nothing of castling, so positions with castling rights,
+// or with an en-passant capture available, are not probed.
+public class Tablebases implements Closeable {
+
+    public static final int UNKNOWN = -1;
+    public static final int DRAW = 0;
+    public static final int WIN = 1;
+    public static final int LOSS = 2;
+    static final int INVALID = 3;
+
+    static final String WDL_SUFFIX = ".tbw";
+    static final String DTM_SUFFIX = ".tbm";
+
+    private static final int SEGMENT_BITS = 22;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    // Both orientations of each material, by Material.signature
+    private final Map<Long, Table> tables = new HashMap<>();
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final Map<Long, Segment> segments = new ConcurrentHashMap<>();
+    private final int maxSegments;
+
+    private int maxPieces;
+
+    private final LongAdder probes = new LongAdder();
+    private final AtomicLong segmentMaps = new AtomicLong();
+
+    public Tablebases(Path directory) throws IOException {
+        this(directory, 64);
+    }
+
+    // maxSegments bounds how many SEGMENT_SIZE mappings are kept at once
+    public Tablebases(Path directory, int maxSegments) throws IOException {
+
+        this.maxSegments = Math.max(1, maxSegments);
+
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + WDL_SUFFIX)){
+            for(Path wdl : files){
+
+                String name = wdl.getFileName().toString();
+                Material material = Material.of(name.substring(0, name.length() - WDL_SUFFIX.length()));
+                Path dtm = directory.resolve(material.name + DTM_SUFFIX);
+
+                if(!Files.exists(dtm)) continue;
+
+                Table table = new Table(material, open(wdl, (material.size + 3) / 4), open(dtm, material.size));
+
+                tables.put(material.signature(false), table);
+                tables.put(material.signature(true), table);
+
+                maxPieces = Math.max(maxPieces, material.pieceCount());
+            }
+        }
+    }
+
+    private int open(Path path, long expectedSize) throws IOException {
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        if(channel.size() != expectedSize){
+            channel.close();
+            throw new IOException("Wrong size for " + path + ": " + channel.size() + " instead of " + expectedSize);
+        }
+
+        channels.add(channel);
+
+        return channels.size() - 1;
+    }
+
+    // Largest number of pieces, kings included, any table has; boards with more are never in a table
+    public int maxPieces(){
+        return maxPieces;
+    }
+
+    public boolean has(Material material){
+        Table table = tables.get(material.signature(false));
+        return table != null && table.material.name.equals(material.name);
+    }
+
+    // WIN, DRAW or LOSS for the side to move, or UNKNOWN if the position is not in a table
+    public int probeWdl(BitBoard board){
+        return probeWdl(board, new int[maxPieces]);
+    }
+
+    // squares is scratch space for at least maxPieces() entries, so searches can probe without allocating
+    public int probeWdl(BitBoard board, int[] squares){
+
+        Table table = table(board);
+
+        if(table == null) return UNKNOWN;
+
+        long index = table.material.index(board, isFlipped(table, board), squares);
+
+        if(index < 0) return UNKNOWN;
+
+        int wdl = read(table.wdl, index >>> 2) >>> ((int) index & 3) * 2 & 3;
+
+        return wdl == INVALID ? UNKNOWN : wdl;
+    }
+
+    // Plies to mate with best play for a won or lost position; 0 for draws and positions not in a table
+    public int probeDtm(BitBoard board){
+        return probeDtm(board, new int[maxPieces]);
+    }
+
+    public int probeDtm(BitBoard board, int[] squares){
+
+        Table table = table(board);
+
+        if(table == null) return 0;
+
+        long index = table.material.index(board, isFlipped(table, board), squares);
+
+        return index < 0 ? 0 : read(table.dtm, index);
+    }
+
+    // The move that wins fastest, keeps the draw, or loses slowest; Move.NONE unless the position and every
+    // position after it are in the tables
+    public int bestMove(BitBoard board){
+
+        int[] squares = new int[maxPieces];
+        int wdl = probeWdl(board, squares);
+
+        if(wdl == UNKNOWN) return Move.NONE;
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(board, moves, 0);
+
+        int best = Move.NONE;
+        int bestDtm = 0;
+
+        for(int i = 0; i < count; i++){
+
+            board.makeMove(moves[i]);
+            int reply = probeWdl(board, squares);
+            int dtm = probeDtm(board, squares);
+            board.unmakeMove();
+
+            if(reply == UNKNOWN) return Move.NONE;
+
+            if(wdl == WIN && reply == LOSS && (best == Move.NONE || dtm < bestDtm)
+                    || wdl == DRAW && reply == DRAW && best == Move.NONE
+                    || wdl == LOSS && reply == WIN && (best == Move.NONE || dtm > bestDtm)){
+                best = moves[i];
+                bestDtm = dtm;
+            }
+        }
+
+        return best;
+    }
+
+    public long getProbes(){
+        return probes.sum();
+    }
+
+    // Segments mapped so far; compared with getProbes() it shows how well the mapped segments are reused
+    public long getSegmentMaps(){
+        return segmentMaps.get();
+    }
+
+    private Table table(BitBoard board){
+
+        if(board.castlingRights != 0) return null;
+
+        int ep = board.epSquare;
+
+        if(ep != BitBoard.NO_SQUARE && (Attacks.PAWN[board.sideToMove ^ 1][ep] & board.pieces(board.sideToMove, BitBoard.PAWN)) != 0) return null;
+
+        return tables.get(Material.signature(board));
+    }
+
+    private static boolean isFlipped(Table table, BitBoard board){
+        return Material.signature(board) != table.whiteSignature;
+    }
+
+    private int read(int file, long offset){
+
+        probes.increment();
+
+        long key = (long) file << 32 | offset >>> SEGMENT_BITS;
+
+        Segment segment = segments.get(key);
+
+        if(segment == null) segment = map(file, key);
+
+        // Only the count of mappings so far, so hits never write to shared state other than their own segment
+        segment.lastUsed = segmentMaps.get();
+
+        // Absolute reads leave the buffer's position alone, so threads can share it
+        return segment.buffer.get((int) (offset & SEGMENT_SIZE - 1)) & 0xFF;
+    }
+
+    private synchronized Segment map(int file, long key){
+
+        Segment segment = segments.get(key);
+
+        if(segment != null) return segment;
+
+        if(segments.size() >= maxSegments) evict();
+
+        try{
+            FileChannel channel = channels.get(file);
+            long start = (key & 0xFFFFFFFFL) << SEGMENT_BITS;
+            segment = new Segment(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, channel.size() - start)));
+        }catch(IOException e){
+            throw new IllegalStateException("Could not map tablebase segment", e);
+        }
+
+        segment.lastUsed = segmentMaps.incrementAndGet();
+        segments.put(key, segment);
+
+        return segment;
+    }
+
+    // Drops the segment used longest ago, going by how many mappings there had been at its last use.
+    // A thread still reading it keeps its own reference, so the mapping only goes when that read is done.
+    private void evict(){
+
+        Long oldest = null;
+        long oldestUse = Long.MAX_VALUE;
+
+        for(Map.Entry<Long, Segment> entry : segments.entrySet()){
+            if(entry.getValue().lastUsed < oldestUse){
+                oldest = entry.getKey();
+                oldestUse = entry.getValue().lastUsed;
+            }
+        }
+
+        if(oldest != null) segments.remove(oldest);
+    }
+
+    // Mapped segments stay valid until they are garbage collected
+    @Override
+    public synchronized void close() throws IOException {
+
+        segments.clear();
+
+        for(FileChannel channel : channels){
+            channel.close();
+        }
+    }
+
+    private static final class Segment {
+
+        final ByteBuffer buffer;
+
+        // Written without synchronization; a stale value only makes eviction a little less exact
+        long lastUsed;
+
+        Segment(ByteBuffer buffer){
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Table {
+
+        final Material material;
+        final long whiteSignature;
+        final int wdl;
+        final int dtm;
+
+        Table(Material material, int wdl, int dtm){
+            this.material = material;
+            this.whiteSignature = material.signature(false);
+            this.wdl = wdl;
+            this.dtm = dtm;
+        }
+    }
+}
@@ -0,0 +1,507 @@
+package chessEngine.uci;
+
+import chessEngine.ai.*;
+import chessEngine.book.*;
+import chessEngine.gameState.*;
+import chessEngine.tablebase.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Universal Chess Interface front end. Commands are read on the caller's thread while the search runs on a
+// dedicated thread, so isready, stop and ponderhit are answered immediately during a search. Output goes
+// through one synchronized method that the search only reaches once per iteration or per throttled update.
+public class UciEngine {
+
+    private static final String NAME = "ChessAI";
+    private static final String AUTHOR = "J9465812";
+
+    // Iteration lines closer together than this are held back; the last one is flushed before bestmove
+    private static final long INFO_INTERVAL_MS = 50;
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+
+    // Kept back from every time budget for the round trip to the GUI
+    private static final long MOVE_OVERHEAD_MS = 30;
+
+    private final BufferedReader in;
+    private final PrintStream out;
+
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "uci-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private AdvancedAI ai;
+    private int hashMb = 16;
+    private int threads = 1;
+    private OpeningBook book;
+    private Tablebases tablebases;
+
+    private BitBoard position = ChessBoard.START_POSITION.toBitBoard();
+
+    private Future<?> search;
+
+    // Infinite and ponder searches must not report bestmove until stop or ponderhit, even if they finish
+    private final Object release = new Object();
+    private boolean waitForRelease;
+
+    private final Listener listener = new Listener();
+
+    public UciEngine(BufferedReader in, PrintStream out){
+        this.in = in;
+        this.out = out;
+        createEngine();
+    }
+
+    public static void main(String[] args) throws IOException {
+        new UciEngine(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), System.out).run();
+    }
+
+    public void run() throws IOException {
+
+        String line;
+
+        while((line = in.readLine()) != null){
+
+            line = line.trim();
+            if(line.isEmpty()) continue;
+
+            String[] tokens = line.split("\\s+");
+
+            try{
+                if(!handle(tokens)) break;
+            }catch(IllegalArgumentException e){
+                send("info string " + e.getMessage());
+            }
+        }
+
+        stopSearch();
+        searchExecutor.shutdown();
+    }
+
+    // Returns false on quit
+    private boolean handle(String[] tokens){
+
+        switch(tokens[0]){
+
+            case "uci":
+                send("id name " + NAME);
+                send("id author " + AUTHOR);
+                send("option name Hash type spin default 16 min 1 max 4096");
+                send("option name Threads type spin default 1 min 1 max 256");
+                send("option name Ponder type check default false");
+                send("option name BookFile type string default <empty>");
+                send("option name TablebasePath type string default <empty>");
+                send("uciok");
+                break;
+
+            case "isready":
+                send("readyok");
+                break;
+
+            case "setoption":
+                waitForSearch();
+                setOption(tokens);
+                break;
+
+            case "ucinewgame":
+                waitForSearch();
+                ai.getTranspositionTable().clear();
+                break;
+
+            case "position":
+                waitForSearch();
+                position = parsePosition(tokens);
+                break;
+
+            case "go":
+                waitForSearch();
+                go(tokens);
+                break;
+
+            case "stop":
+                stopSearch();
+                break;
+
+            case "ponderhit":
+                ai.ponderHit();
+                releaseBestMove();
+                break;
+
+            case "quit":
+                return false;
+
+            default:
+                send("info string Unknown command: " + tokens[0]);
+        }
+
+        return true;
+    }
+
+    private void createEngine(){
+        ai = new AdvancedAI(0, hashMb);
+        ai.setThreads(threads);
+        ai.setListener(listener);
+        ai.setBook(book);
+        ai.setTablebases(tablebases);
+    }
+
+    private void setTablebases(String directory){
+
+        try{
+            if(tablebases != null) tablebases.close();
+
+            tablebases = directory == null || directory.isEmpty() || directory.equals("<empty>") ? null : new Tablebases(Paths.get(directory));
+        }catch(IOException e){
+            tablebases = null;
+            throw new IllegalArgumentException("Could not open tablebases: " + directory);
+        }finally{
+            ai.setTablebases(tablebases);
+        }
+    }
+
+    private void setBook(String file){
+
+        try{
+            if(book != null) book.close();
+
+            book = file == null || file.isEmpty() || file.equals("<empty>") ? null : OpeningBook.open(Paths.get(file));
+        }catch(IOException e){
+            book = null;
+            throw new IllegalArgumentException("Could not open book: " + file);
+        }finally{
+            ai.setBook(book);
+        }
+    }
+
+    private void setOption(String[] tokens){
+
+        // setoption name <name> value <value>; option names may contain spaces
+        StringBuilder name = new StringBuilder();
+        String value = null;
+
+        int i = 1;
+
+        if(i < tokens.length && tokens[i].equals("name")) i++;
+
+        for(; i < tokens.length && !tokens[i].equals("value"); i++){
+            if(name.length() > 0) name.append(' ');
+            name.append(tokens[i]);
+        }
+
+        // Values may contain spaces too, file names in particular
+        for(i++; i < tokens.length; i++){
+            value = value == null ? tokens[i] : value + " " + tokens[i];
+        }
+
+        switch(name.toString().toLowerCase()){
+
+            case "hash":
+                hashMb = Math.max(1, Math.min(4096, parseInt(value)));
+                createEngine();
+                break;
+
+            case "threads":
+                threads = Math.max(1, Math.min(256, parseInt(value)));
+                ai.setThreads(threads);
+                break;
+
+            case "ponder":
+                break;
+
+            case "bookfile":
+                setBook(value);
+                break;
+
+            case "tablebasepath":
+                setTablebases(value);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown option: " + name);
+        }
+    }
+
+    private static BitBoard parsePosition(String[] tokens){
+
+        BitBoard board;
+        int i = 1;
+
+        if(i < tokens.length && tokens[i].equals("startpos")){
+            board = ChessBoard.START_POSITION.toBitBoard();
+            i++;
+        }else if(i < tokens.length && tokens[i].equals("fen")){
+
+            StringBuilder fen = new StringBuilder();
+
+            for(i++; i < tokens.length && !tokens[i].equals("moves"); i++){
+                fen.append(tokens[i]).append(' ');
+            }
+
+            board = Fen.parse(fen);
+        }else{
+            throw new IllegalArgumentException("Expected startpos or fen");
+        }
+
+        if(i < tokens.length && tokens[i].equals("moves")){
+            for(i++; i < tokens.length; i++){
+
+                int move = MoveGenerator.resolve(board, Move.parse(tokens[i]));
+
+                if(move == Move.NONE) throw new IllegalArgumentException("Illegal move: " + tokens[i]);
+
+                board.makeMove(move);
+            }
+        }
+
+        return board;
+    }
+
+    private void go(String[] tokens){
+
+        long whiteTime = 0, blackTime = 0, whiteIncrement = 0, blackIncrement = 0, moveTime = 0, nodes = 0;
+        int movesToGo = 0, depth = 0;
+        boolean infinite = false, ponder = false;
+
+        for(int i = 1; i < tokens.length; i++){
+            switch(tokens[i]){
+                case "wtime": whiteTime = parseLong(tokens[++i]); break;
+                case "btime": blackTime = parseLong(tokens[++i]); break;
+                case "winc": whiteIncrement = parseLong(tokens[++i]); break;
+                case "binc": blackIncrement = parseLong(tokens[++i]); break;
+                case "movestogo": movesToGo = parseInt(tokens[++i]); break;
+                case "depth": depth = parseInt(tokens[++i]); break;
+                case "nodes": nodes = parseLong(tokens[++i]); break;
+                case "movetime": moveTime = parseLong(tokens[++i]); break;
+                case "infinite": infinite = true; break;
+                case "ponder": ponder = true; break;
+            }
+        }
+
+        boolean white = position.sideToMove == BitBoard.WHITE;
+        long time = white ? whiteTime : blackTime;
+        long increment = white ? whiteIncrement : blackIncrement;
+
+        SearchLimits limits;
+
+        if(infinite){
+            limits = new SearchLimits(0, 0, 0, 0);
+        }else if(moveTime > 0){
+            limits = SearchLimits.moveTime(Math.max(1, moveTime - MOVE_OVERHEAD_MS));
+        }else if(time > 0){
+            limits = SearchLimits.clock(time - MOVE_OVERHEAD_MS, increment, movesToGo);
+        }else{
+            limits = new SearchLimits(0, 0, 0, 0);
+        }
+
+        if(depth > 0) limits = limits.withDepth(depth);
+        if(nodes > 0) limits = limits.withNodes(nodes);
+
+        ChessBoard board = position.toChessBoard();
+        SearchLimits searchLimits = limits;
+        boolean ponderSearch = ponder;
+
+        synchronized(release){
+            waitForRelease = infinite || ponder;
+        }
+
+        CountDownLatch started = new CountDownLatch(1);
+        listener.reset(started);
+
+        search = searchExecutor.submit(() -> {
+
+            ChessMove best;
+
+            try{
+                best = ai.getAIMove(board, searchLimits, ponderSearch);
+            }catch(RuntimeException e){
+                // The GUI still needs a bestmove, even for a ponder or infinite search
+                send("info string Search failed: " + e);
+                send("bestmove 0000");
+                return;
+            }finally{
+                // The search may fail before it reports starting, and go must not wait on it forever
+                started.countDown();
+            }
+
+            synchronized(release){
+                while(waitForRelease){
+                    try{
+                        release.wait();
+                    }catch(InterruptedException e){
+                        return;
+                    }
+                }
+            }
+
+            listener.flush();
+            sendBestMove(best);
+        });
+
+        // Commands after go may refer to this search, so only go on once it can receive them
+        try{
+            started.await();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendBestMove(ChessMove best){
+
+        if(best == null){
+            send("bestmove 0000");
+            return;
+        }
+
+        ChessMove[] pv = ai.getPrincipalVariation();
+
+        if(pv.length > 1){
+            send("bestmove " + uciMove(best.toMove()) + " ponder " + uciMove(pv[1].toMove()));
+        }else{
+            send("bestmove " + uciMove(best.toMove()));
+        }
+    }
+
+    private void stopSearch(){
+        ai.stop();
+        releaseBestMove();
+    }
+
+    private void releaseBestMove(){
+        synchronized(release){
+            waitForRelease = false;
+            release.notifyAll();
+        }
+    }
+
+    // Commands that change the engine's state wait for the running search to report its move
+    private void waitForSearch(){
+
+        if(search == null) return;
+
+        try{
+            search.get();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }catch(ExecutionException e){
+            send("info string Search failed: " + e.getCause());
+        }
+
+        search = null;
+    }
+
+    private synchronized void send(String line){
+        out.println(line);
+        out.flush();
+    }
+
+    static String uciMove(int move){
+
+        String text = Move.toString(move);
+
+        return text.substring(0, 2) + text.substring(3);
+    }
+
+    private static int parseInt(String value){
+        try{
+            return Integer.parseInt(value);
+        }catch(NumberFormatException e){
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static long parseLong(String value){
+        try{
+            return Long.parseLong(value);
+        }catch(NumberFormatException e){
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    // Turns search reports into info lines. Iteration lines arriving faster than INFO_INTERVAL_MS are held
+    // back, keeping only the newest, and progress lines are sent at most once per PROGRESS_INTERVAL_MS.
+    private class Listener implements SearchListener {
+
+        private CountDownLatch started;
+        private SearchInfo pending;
+        private long lastInfoMs;
+        private long lastProgressMs;
+
+        void reset(CountDownLatch started){
+            this.started = started;
+            pending = null;
+            lastInfoMs = -INFO_INTERVAL_MS;
+            lastProgressMs = 0;
+        }
+
+        @Override
+        public void searchStarted(){
+            started.countDown();
+        }
+
+        @Override
+        public void iterationCompleted(SearchInfo info){
+
+            if(info.timeMs - lastInfoMs < INFO_INTERVAL_MS){
+                pending = info;
+                return;
+            }
+
+            pending = null;
+            lastInfoMs = info.timeMs;
+            send(infoLine(info));
+        }
+
+        @Override
+        public void searchProgress(long nodes, long elapsedMs){
+
+            if(elapsedMs - lastProgressMs < PROGRESS_INTERVAL_MS) return;
+
+            lastProgressMs = elapsedMs;
+
+            flush();
+
+            send("info nodes " + nodes + " nps " + (elapsedMs == 0 ? 0 : nodes * 1000 / elapsedMs) + " time " + elapsedMs
+                    + " hashfull " + ai.getTranspositionTable().hashfull());
+        }
+
+        void flush(){
+
+            if(pending == null) return;
+
+            lastInfoMs = pending.timeMs;
+            send(infoLine(pending));
+            pending = null;
+        }
+
+        private String infoLine(SearchInfo info){
+
+            StringBuilder sb = new StringBuilder("info depth ").append(info.depth).append(" score ");
+
+            if(info.isMate()){
+                sb.append("mate ").append(info.mateIn());
+            }else{
+                sb.append("cp ").append(info.score);
+            }
+
+            sb.append(" nodes ").append(info.nodes).append(" nps ").append(info.nodesPerSecond())
+                    .append(" time ").append(info.timeMs).append(" hashfull ").append(info.hashfull).append(" pv");
+
+            for(int move : info.pv){
+                sb.append(' ').append(uciMove(move));
+            }
+
+            return sb.toString();
+        }
+    }
+}